@@ -3,9 +3,19 @@ package flopbot;
 import com.google.gson.Gson;
 import flopbot.commands.CommandRegistry;
 import flopbot.data.Database;
+import flopbot.data.ExplorerSummaryCache;
 import flopbot.handlers.ButtonHandler;
+import flopbot.handlers.MetricsHandler;
+import flopbot.handlers.RewardHandler;
 import flopbot.handlers.StatsHandler;
 import flopbot.handlers.WalletHandler;
+import flopbot.market.CoinPaprikaClient;
+import flopbot.market.CoinSymbolIndex;
+import flopbot.market.MarketDataService;
+import flopbot.rpc.FlopcoinRpcClient;
+import flopbot.rpc.RpcException;
+import flopbot.util.EditCoalescer;
+import flopbot.util.TaskScheduler;
 import io.github.cdimascio.dotenv.Dotenv;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
@@ -14,16 +24,10 @@ import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import okhttp3.*;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main class for FlopBot Discord Bot.
@@ -35,15 +39,22 @@ public class FlopBot {
     public OkHttpClient httpClient;
     public final @NotNull Dotenv config;
     public final @NotNull JDA jda;
+    public final @NotNull FlopcoinRpcClient rpc;
     public final @NotNull Database database;
+    public final @NotNull TaskScheduler scheduler;
+    public final @NotNull EditCoalescer edits;
 
     public final @NotNull WalletHandler walletHandler;
+    public final @NotNull RewardHandler rewardHandler;
+    public final @NotNull MarketDataService market;
+    public final @NotNull CoinSymbolIndex coinSymbols;
+    public final @NotNull CoinPaprikaClient coinPaprika;
+    public final @NotNull ExplorerSummaryCache networkSummary;
 
     // RPC connection details as static variables
     public static final String RPC_USER;
     public static final String RPC_PASSWORD;
     public static final String RPC_URL;
-    public static final String LIVECOINWATCH_API_KEY;
     public static final String FAUCET_ADDRESS;
     public static final String COIN_EMOJI;
 
@@ -53,7 +64,6 @@ public class FlopBot {
         RPC_USER = dotenv.get("RPC_USER", System.getenv("RPC_USER"));
         RPC_PASSWORD = dotenv.get("RPC_PASSWORD", System.getenv("RPC_PASSWORD"));
         RPC_URL = dotenv.get("RPC_URL", System.getenv("RPC_URL"));
-        LIVECOINWATCH_API_KEY = dotenv.get("LIVECOINWATCH_API_KEY", System.getenv("LIVECOINWATCH_API_KEY"));
         FAUCET_ADDRESS = dotenv.get("FAUCET_ADDRESS", System.getenv("FAUCET_ADDRESS"));
         COIN_EMOJI = dotenv.get("COIN_EMOJI", System.getenv("COIN_EMOJI"));
     }
@@ -67,11 +77,28 @@ public class FlopBot {
         config = Dotenv.configure().ignoreIfMissing().load();
         String token = config.get("TOKEN", System.getenv("TOKEN"));
 
+        // Setup the shared scheduler for all timers and background jobs
+        scheduler = new TaskScheduler(getConfigInt("SCHEDULER_TICK_MS", 10), 512);
+        edits = new EditCoalescer(scheduler, 0, TimeUnit.MILLISECONDS);
+
+        // Setup Flopcoin node client
+        rpc = new FlopcoinRpcClient(RPC_URL, RPC_USER, RPC_PASSWORD);
+
         // Setup Database
-        database = new Database(config.get("DATABASE", System.getenv("DATABASE")));
+        database = new Database(config.get("DATABASE", System.getenv("DATABASE")), rpc);
+
+        // Setup market data
+        market = new MarketDataService(httpClient, scheduler, getConfigInt("MARKET_REFRESH_MINUTES", 5));
+        String coinIndexFile = config.get("COIN_INDEX_FILE", System.getenv("COIN_INDEX_FILE"));
+        coinSymbols = new CoinSymbolIndex(httpClient,
+                Path.of(coinIndexFile != null && !coinIndexFile.isBlank() ? coinIndexFile : "data/coin-symbols.tsv"), scheduler,
+                getConfigInt("COIN_INDEX_REFRESH_HOURS", 24));
+        coinPaprika = new CoinPaprikaClient(httpClient, coinSymbols);
+        networkSummary = new ExplorerSummaryCache(rpc, httpClient, market, scheduler, getConfigInt("NETWORK_REFRESH_SECONDS", 60));
 
         // Set Handlers
         walletHandler = new WalletHandler(this);
+        rewardHandler = new RewardHandler(this);
 
         // Create Discord Bot
         jda = JDABuilder.createLight(token, EnumSet.of(GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT))
@@ -84,45 +111,45 @@ public class FlopBot {
         jda.addEventListener(
                 new CommandRegistry(this),
                 new ButtonHandler(this),
-                new StatsHandler(config)
+                new StatsHandler(this)
         );
+
+        // Log internal metrics periodically
+        new MetricsHandler(this, getConfigInt("METRICS_LOG_MINUTES", 15));
+
+        // Remove stakes with spent UTXOs in the background while the bot comes online, then as new blocks spend them
+        database.validateStakes(getConfigInt("STAKE_VALIDATION_PARALLELISM", 4));
+        database.watchStakes(getConfigInt("STAKE_VALIDATION_PARALLELISM", 4), getConfigInt("STAKE_WATCH_INTERVAL_SECONDS", 10), scheduler);
+    }
+
+    /**
+     * Reads an optional integer setting from the .env file or system environment.
+     *
+     * @param key the name of the setting.
+     * @param defaultValue the value to use if the setting is missing or invalid.
+     * @return the configured value.
+     */
+    public int getConfigInt(String key, int defaultValue) {
+        String value = config.get(key, System.getenv(key));
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     /**
      * Retrieves the faucet's balance using the getbalance RPC command.
      *
-     * @return The current wallet balance.
-     * @throws Exception if the RPC call fails.
+     * @return The current wallet balance, or 0 if the RPC call fails.
      */
     public double getFaucetBalance() {
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("jsonrpc", "1.0");
-        jsonRequest.put("id", "getbalance");
-        jsonRequest.put("method", "getbalance");
-        // Some nodes require an empty array of parameters.
-        JSONArray params = new JSONArray();
-        jsonRequest.put("params", params);
-
-        String auth = FlopBot.RPC_USER + ":" + FlopBot.RPC_PASSWORD;
-        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(FlopBot.RPC_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Basic " + encodedAuth)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
-                .build();
-
         try {
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            JSONObject jsonResponse = new JSONObject(response.body());
-
-            if (!jsonResponse.isNull("error") && !jsonResponse.get("error").toString().equals("null")) {
-                return 0;
-            }
-            return jsonResponse.getDouble("result");
-        } catch (InterruptedException | IOException e) {
+            return rpc.getBalance();
+        } catch (RpcException e) {
             return 0;
         }
     }
@@ -0,0 +1,119 @@
+package flopbot.commands;
+
+import flopbot.FlopBot;
+import flopbot.util.embeds.EmbedUtils;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A slash command that composes non-blocking calls instead of waiting on them.
+ * The interaction is deferred before it runs, and the embed its future completes with
+ * is sent through the interaction hook, so no thread is held while the command waits.
+ * Errors meant only for the user who ran the command can be returned with {@link #ephemeralError}.
+ *
+ * @author TechnoVision
+ */
+public abstract class AsyncCommand extends Command {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncCommand.class.getName());
+
+    public AsyncCommand(FlopBot bot) {
+        super(bot);
+        this.slow = true;
+    }
+
+    /**
+     * Starts the command. Must not block; every RPC, HTTP, and database call should be composed onto the result.
+     *
+     * @param event the deferred interaction.
+     * @return a stage that completes with the embed to reply with.
+     */
+    public abstract CompletionStage<MessageEmbed> executeAsync(SlashCommandInteractionEvent event);
+
+    /**
+     * @param error the cause of the failure.
+     * @return the embed to reply with when the command fails.
+     */
+    protected MessageEmbed onError(Throwable error) {
+        return EmbedUtils.createError("An error occurred while running this command!");
+    }
+
+    /**
+     * Completes a command with an error only the user who ran it can see, such as invalid input.
+     * It is not counted or logged as a failure.
+     *
+     * @param message the error to show.
+     * @return a future that completes exceptionally with the error.
+     */
+    protected static CompletableFuture<MessageEmbed> ephemeralError(String message) {
+        return CompletableFuture.failedFuture(new EphemeralError(message));
+    }
+
+    /**
+     * Starts the command and replies through the hook once it completes, even if it fails.
+     *
+     * @param event the deferred interaction.
+     * @return a stage that completes once the reply is queued, exceptionally if the command failed.
+     */
+    public CompletableFuture<Void> start(SlashCommandInteractionEvent event) {
+        CompletionStage<MessageEmbed> result;
+        try {
+            result = executeAsync(event);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.toCompletableFuture().handle((embed, error) -> {
+            if (error != null) {
+                Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                if (cause instanceof EphemeralError) {
+                    replyEphemeral(event, EmbedUtils.createError(cause.getMessage()));
+                    return null;
+                }
+                LOGGER.log(Level.SEVERE, "Command /" + name + " failed", cause);
+                event.getHook().sendMessageEmbeds(onError(cause)).queue();
+                throw new CompletionException(cause);
+            }
+            event.getHook().sendMessageEmbeds(embed).queue();
+            return null;
+        });
+    }
+
+    /**
+     * The deferred reply is public, and its first follow-up replaces it with the same visibility,
+     * so the deferred message is deleted first and the embed sent as a new, ephemeral follow-up.
+     */
+    private static void replyEphemeral(SlashCommandInteractionEvent event, MessageEmbed embed) {
+        InteractionHook hook = event.getHook();
+        hook.deleteOriginal().queue(
+                deleted -> hook.sendMessageEmbeds(embed).setEphemeral(true).queue(),
+                failure -> hook.sendMessageEmbeds(embed).setEphemeral(true).queue());
+    }
+
+    /**
+     * Runs the command and waits for it, for callers that dispatch subcommands synchronously.
+     * Failures are already reported to the user, so they are not rethrown.
+     */
+    @Override
+    public void execute(SlashCommandInteractionEvent event) {
+        start(event).exceptionally(error -> null).join();
+    }
+
+    /**
+     * An expected error to show privately to the user, without a stack trace.
+     */
+    private static class EphemeralError extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        EphemeralError(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
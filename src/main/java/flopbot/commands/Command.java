@@ -1,11 +1,13 @@
 package flopbot.commands;
 
 import flopbot.FlopBot;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -22,11 +24,27 @@ public abstract class Command {
     public List<OptionData> args;
     public List<SubcommandData> subCommands;
 
+    /** Slow commands are deferred before they run, and must respond through the interaction hook */
+    public boolean slow;
+
+    /** The most interactions of this command that may run at once */
+    public int maxConcurrency;
+
     public Command(FlopBot bot) {
         this.bot = bot;
         this.args = new ArrayList<>();
         this.subCommands = new ArrayList<>();
+        this.maxConcurrency = 16;
     }
 
     public abstract void execute(SlashCommandInteractionEvent event);
+
+    /**
+     * Suggests values for options registered with autocomplete. Suggests nothing by default.
+     *
+     * @param event the autocomplete interaction for one of this command's options.
+     */
+    public void autoComplete(CommandAutoCompleteInteractionEvent event) {
+        event.replyChoices(Collections.emptyList()).queue();
+    }
 }
@@ -5,17 +5,28 @@ import flopbot.commands.links.*;
 import flopbot.commands.utility.HelpCommand;
 import flopbot.commands.utility.RolesCommand;
 import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import flopbot.util.embeds.EmbedUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Registers, listens for, and executes slash commands.
+ * Each interaction runs on its own virtual thread, so a command blocked on the node or an
+ * HTTP API never holds up JDA's event thread or other interactions. {@link AsyncCommand}s
+ * need no thread of their own and are started directly on the event thread.
  *
  * @author TechnoVision
  */
@@ -27,6 +38,19 @@ public class CommandRegistry extends ListenerAdapter {
     /** Map of command names to command objects */
     public static final Map<String, Command> commandsMap = new HashMap<>();
 
+    /** Map of command names to their concurrency limits and metrics */
+    private static final Map<String, CommandStats> statsMap = new ConcurrentHashMap<>();
+
+    private static final Logger LOGGER = Logger.getLogger(CommandRegistry.class.getName());
+
+    /** Discord drops replies to interactions that aren't acknowledged within 3 seconds */
+    private static final long MAX_WAIT_MILLIS = 2_000;
+
+    /** Deferred interactions stay valid for 15 minutes, so slow commands can wait longer */
+    private static final long MAX_SLOW_WAIT_MILLIS = 60_000;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("command-", 0).factory());
+
     public CommandRegistry(FlopBot bot) {
         // Create and map commands
         mapCommand(
@@ -70,10 +94,18 @@ public class CommandRegistry extends ListenerAdapter {
     private void mapCommand(Command ...cmds) {
         for (Command cmd : cmds) {
             commandsMap.put(cmd.name, cmd);
+            statsMap.put(cmd.name, new CommandStats(cmd.name, cmd.maxConcurrency));
             commands.add(cmd);
         }
     }
 
+    /**
+     * @return a read-only view of each command's concurrency limits and metrics, keyed by command name.
+     */
+    public static Map<String, CommandStats> getStats() {
+        return Collections.unmodifiableMap(statsMap);
+    }
+
     /**
      * Creates a list of CommandData for all commands.
      *
@@ -100,7 +132,87 @@ public class CommandRegistry extends ListenerAdapter {
         // Get command by name and execute it
         Command cmd = commandsMap.get(event.getName());
         if (cmd != null) {
+            if (cmd.slow) {
+                event.deferReply().queue();
+            }
+            if (cmd instanceof AsyncCommand asyncCmd) {
+                dispatchAsync(asyncCmd, event);
+                return;
+            }
+            long queuedAt = System.nanoTime();
+            executor.execute(() -> dispatch(cmd, event, queuedAt));
+        }
+    }
+
+    /**
+     * Runs whenever Discord asks for suggestions while a user types a slash command option.
+     */
+    @Override
+    public void onCommandAutoCompleteInteraction(@NotNull CommandAutoCompleteInteractionEvent event) {
+        Command cmd = commandsMap.get(event.getName());
+        if (cmd != null) {
+            cmd.autoComplete(event);
+        }
+    }
+
+    /**
+     * Waits for a free slot for the command, then runs it and records its timings.
+     */
+    private void dispatch(Command cmd, SlashCommandInteractionEvent event, long queuedAt) {
+        CommandStats stats = statsMap.get(cmd.name);
+        boolean acquired;
+        try {
+            acquired = stats.getPermits().tryAcquire(cmd.slow ? MAX_SLOW_WAIT_MILLIS : MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        stats.recordQueueWait(startedAt - queuedAt);
+        if (!acquired) {
+            stats.recordRejection();
+            reply(cmd, event, "This command is busy right now. Please try again in a moment!");
+            return;
+        }
+
+        boolean failed = false;
+        try {
             cmd.execute(event);
+        } catch (Exception e) {
+            failed = true;
+            LOGGER.log(Level.SEVERE, "Command /" + cmd.name + " failed", e);
+            reply(cmd, event, "An error occurred while running this command!");
+        } finally {
+            stats.getPermits().release();
+            stats.recordExecution(System.nanoTime() - startedAt, failed);
+        }
+    }
+
+    /**
+     * Starts an async command on the event thread, since it never blocks, and records its timings once it completes.
+     * A command with no free slot is rejected right away rather than waiting for one.
+     */
+    private void dispatchAsync(AsyncCommand cmd, SlashCommandInteractionEvent event) {
+        CommandStats stats = statsMap.get(cmd.name);
+        stats.recordQueueWait(0);
+        if (!stats.getPermits().tryAcquire()) {
+            stats.recordRejection();
+            reply(cmd, event, "This command is busy right now. Please try again in a moment!");
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        cmd.start(event).whenComplete((result, error) -> {
+            stats.getPermits().release();
+            stats.recordExecution(System.nanoTime() - startedAt, error != null);
+        });
+    }
+
+    private void reply(Command cmd, SlashCommandInteractionEvent event, String error) {
+        if (cmd.slow || event.isAcknowledged()) {
+            event.getHook().sendMessageEmbeds(EmbedUtils.createError(error)).queue();
+        } else {
+            event.replyEmbeds(EmbedUtils.createError(error)).setEphemeral(true).queue();
         }
     }
 
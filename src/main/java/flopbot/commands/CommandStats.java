@@ -0,0 +1,110 @@
+package flopbot.commands;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit and timing metrics for one slash command.
+ * Queue wait is the time an interaction spends waiting for a free slot,
+ * and execution time is how long the command itself takes.
+ */
+public class CommandStats {
+
+    private final String name;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder execNanos = new LongAdder();
+    private final LongAccumulator maxQueueNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxExecNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param name the name of the command.
+     * @param maxConcurrency the most interactions of this command that may run at once.
+     */
+    public CommandStats(String name, int maxConcurrency) {
+        this.name = name;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency, true);
+    }
+
+    Semaphore getPermits() {
+        return permits;
+    }
+
+    void recordQueueWait(long nanos) {
+        queueNanos.add(nanos);
+        maxQueueNanos.accumulate(nanos);
+    }
+
+    void recordExecution(long nanos, boolean failed) {
+        executions.increment();
+        execNanos.add(nanos);
+        maxExecNanos.accumulate(nanos);
+        if (failed) failures.increment();
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the number of interactions of this command currently running.
+     */
+    public int getRunning() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * @return the number of interactions waiting for a free slot.
+     */
+    public int getQueued() {
+        return permits.getQueueLength();
+    }
+
+    public double getAverageQueueMillis() {
+        long count = getExecutions() + getRejections();
+        return (count == 0) ? 0 : queueNanos.sum() / 1e6 / count;
+    }
+
+    public double getMaxQueueMillis() {
+        return maxQueueNanos.get() / 1e6;
+    }
+
+    public double getAverageExecMillis() {
+        long count = getExecutions();
+        return (count == 0) ? 0 : execNanos.sum() / 1e6 / count;
+    }
+
+    public double getMaxExecMillis() {
+        return maxExecNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("/%s[runs=%d, failed=%d, rejected=%d, running=%d, queued=%d, queue avg/max=%.1f/%.1fms, exec avg/max=%.1f/%.1fms]",
+                name, getExecutions(), getFailures(), getRejections(), getRunning(), getQueued(),
+                getAverageQueueMillis(), getMaxQueueMillis(), getAverageExecMillis(), getMaxExecMillis());
+    }
+}
@@ -3,8 +3,14 @@ package flopbot.commands.casino;
 import flopbot.FlopBot;
 import flopbot.commands.Category;
 import flopbot.commands.Command;
+import flopbot.data.cache.LedgerEntry;
 import flopbot.handlers.ButtonHandler;
+import flopbot.handlers.ComponentId;
+import flopbot.handlers.ComponentId.Action;
+import flopbot.handlers.ComponentId.Game;
 import flopbot.handlers.WalletHandler;
+import flopbot.util.TaskScheduler;
+import flopbot.util.collections.ConcurrentLongObjectMap;
 import flopbot.util.embeds.EmbedColor;
 import flopbot.util.embeds.EmbedUtils;
 import flopbot.util.enums.Cards;
@@ -16,9 +22,9 @@ import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 
-import java.util.*;
-import java.util.concurrent.ScheduledFuture;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Command that plays a game of blackjack.
@@ -28,9 +34,16 @@ import java.util.concurrent.TimeUnit;
 public class BlackjackCommand extends Command {
 
     public static final String CARDBACK_EMOJI = "<:cardback:1336232629019742298>";
-    public static final Map<String, Blackjack> games = new HashMap<>();
-    public static final Map<String, Stack<Cards>> decks = new HashMap<>();
-    public static final Map<String, ScheduledFuture> resetTimers = new HashMap<>();
+
+    /**
+     * Most cards one game can deal. Before their last card, the player's cards add up to at most 20
+     * and the dealer's to at most 16, counting aces as 1. The smallest cards in a deck that fit both
+     * are four aces, four 2s, four 3s and three 4s, which sum to 36, plus each hand's last card.
+     */
+    private static final int MAX_CARDS_PER_GAME = 17;
+
+    /** Every player's session, kept until they have been idle for a few minutes */
+    private static final ConcurrentLongObjectMap<Session> sessions = new ConcurrentLongObjectMap<>();
 
     public BlackjackCommand(FlopBot bot) {
         super(bot);
@@ -42,75 +55,94 @@ public class BlackjackCommand extends Command {
 
     @Override
     public void execute(SlashCommandInteractionEvent event) {
-        // Check if game already exists
         User user = event.getUser();
-        String userID = user.getId();
-        if (games.containsKey(userID)) {
-            String text = "You are already playing a blackjack game!";
-            event.replyEmbeds(EmbedUtils.createError(text)).setEphemeral(true).queue();
-            return;
-        }
+        long userID = user.getIdLong();
+        Session created = new Session();
+        Session session = sessions.putIfAbsent(userID, created);
+        if (session == null) session = created;
 
-        // Charge player for bet
         long bet = event.getOption("bet").getAsLong();
-        WalletHandler walletHandler = bot.walletHandler;
-        long balance = walletHandler.getBalance(user.getIdLong());
-        if (balance < bet) {
-            String currency = FlopBot.COIN_EMOJI + " **" + balance + "**";
-            String text = "You don't have enough FLOP for this bet. You currently have " + currency + " available.";
-            event.replyEmbeds(EmbedUtils.createError(text)).setEphemeral(true).queue();
-            return;
-        }
-        walletHandler.removeCoins(user.getIdLong(), bet);
+        long componentSession = ComponentId.newSession();
+        MessageEmbed embed;
+        session.lock.lock();
+        try {
+            // Check if game already exists, or if this session was just dropped as idle
+            if (session.playing || sessions.get(userID) != session) {
+                String text = "You are already playing a blackjack game!";
+                event.replyEmbeds(EmbedUtils.createError(text)).setEphemeral(true).queue();
+                return;
+            }
 
-        // Create and shuffle draw deck
-        Stack<Cards> deck = decks.get(userID);
-        if (deck == null || deck.size() <= 15) {
-            deck = new Stack<>();
-            for (Cards card : Cards.values()) {
-                deck.push(card);
+            // Charge player for bet
+            WalletHandler walletHandler = bot.walletHandler;
+            if (walletHandler.removeCoins(userID, bet, LedgerEntry.Reason.BET) == WalletHandler.INSUFFICIENT_FUNDS) {
+                long balance = walletHandler.getBalance(userID);
+                String currency = FlopBot.COIN_EMOJI + " **" + balance + "**";
+                String text = "You don't have enough FLOP for this bet. You currently have " + currency + " available.";
+                event.replyEmbeds(EmbedUtils.createError(text)).setEphemeral(true).queue();
+                return;
             }
-            Collections.shuffle(deck);
-            decks.put(userID, deck);
-        }
 
-        // Create new blackjack game
-        Cards dealerCard = deck.pop();
-        List<Cards> playerHand = new ArrayList<>();
-        playerHand.add(deck.pop());
-        playerHand.add(deck.pop());
-        games.put(user.getId(), new Blackjack(userID, dealerCard, playerHand));
+            // Deal a new game
+            if (session.shoe.remaining() < MAX_CARDS_PER_GAME) {
+                session.shoe.shuffle();
+            }
+            session.deal(componentSession);
+
+            // Delete all session data if no response for 3 min
+            if (session.resetTimer != null) session.resetTimer.cancel();
+            Session idle = session;
+            int round = session.round;
+            session.resetTimer = bot.scheduler.schedule(() -> {
+                idle.lock.lock();
+                try {
+                    if (idle.round != round) return;
+                    idle.playing = false;
+                    sessions.remove(userID, idle);
+                } finally {
+                    idle.lock.unlock();
+                }
+            }, 3, TimeUnit.MINUTES);
+            embed = getEmbed(user, session).build();
+        } finally {
+            session.lock.unlock();
+        }
 
         // Send embed with buttons
-        int score = calculateValue(playerHand);
-        MessageEmbed embed = getEmbed(user, score).build();
-        String uuid = user.getId() + ":" + UUID.randomUUID();
-        List<Button> buttons = List.of(Button.primary("blackjack:hit:"+uuid+":"+bet, "Hit"), Button.secondary("blackjack:stand:"+uuid+":"+bet, "Stand"));
-        ButtonHandler.buttons.put(uuid, buttons);
-        event.replyEmbeds(embed).addActionRow(buttons).queue(interactionHook -> {
-            // Delete all game data if no response for 3 min
-            ButtonHandler.disableButtons(uuid, interactionHook);
-            resetTimers.put(userID, ButtonHandler.executor.schedule(() -> {
-                decks.remove(userID);
-                games.remove(userID);
-                resetTimers.remove(userID);
-            }, 3, TimeUnit.MINUTES));
-        });
+        List<Button> buttons = List.of(
+                Button.primary(ComponentId.encode(Game.BLACKJACK, Action.HIT, userID, componentSession, bet, 0), "Hit"),
+                Button.secondary(ComponentId.encode(Game.BLACKJACK, Action.STAND, userID, componentSession, bet, 0), "Stand"));
+        ButtonHandler.components.put(componentSession, buttons);
+        event.replyEmbeds(embed).addActionRow(buttons).queue(interactionHook ->
+                ButtonHandler.disableButtons(componentSession, interactionHook));
     }
 
     /**
-     * Stores and represents a blackjack game.
-     *
-     * @param dealerCard the card that the dealer has revealed.
-     * @param playerHand List of cards that the player has.
+     * A player's shoe, kept between games, and the game they are playing, if any.
+     * All fields are guarded by the session's lock. It is a ReentrantLock rather than a monitor because
+     * wallet updates block on the database while holding it, and a virtual thread blocking inside a
+     * synchronized block would pin its carrier thread.
      */
-    public record Blackjack(String userID, Cards dealerCard, List<Cards> playerHand) {
+    private static class Session {
+        final ReentrantLock lock = new ReentrantLock();
+        final Shoe shoe = new Shoe(1);
+        Cards dealerCard;
+        BlackjackHand playerHand;
+        long componentSession;
+        boolean playing;
 
-        /**
-         * Draws a card from the deck and adds it to the player's hand.
-         */
-        public void hit() {
-            playerHand.add(decks.get(userID).pop());
+        /** Number of games dealt, so a stale idle timer can tell it was replaced */
+        int round;
+        TaskScheduler.Task resetTimer;
+
+        void deal(long componentSession) {
+            this.dealerCard = shoe.draw();
+            this.playerHand = new BlackjackHand();
+            playerHand.add(shoe.draw());
+            playerHand.add(shoe.draw());
+            this.componentSession = componentSession;
+            this.playing = true;
+            this.round++;
         }
     }
 
@@ -118,16 +150,12 @@ public class BlackjackCommand extends Command {
      * Create a blackjack embed with current hand and score.
      *
      * @param user the user playing blackjack.
-     * @param score the current score of the player's hand.
+     * @param session the user's blackjack session.
      * @return a MessageEmbed for the blackjack game.
      */
-    public static EmbedBuilder getEmbed(User user, int score) {
-        Blackjack game = games.get(user.getId());
-        Cards dealerCard = game.dealerCard();
-        List<Cards> playerHand = game.playerHand();
-
-        String dealerText = dealerCard.emoji + " " + CARDBACK_EMOJI + "\n\nValue: " + dealerCard.value;
-        String userText = printCards(playerHand) + "\n\nValue: " + score;
+    private static EmbedBuilder getEmbed(User user, Session session) {
+        String dealerText = session.dealerCard.text + CARDBACK_EMOJI + "\n\nValue: " + session.dealerCard.value;
+        String userText = session.playerHand.print() + "\n\nValue: " + session.playerHand.getValue();
         return new EmbedBuilder()
                 .setColor(EmbedColor.DEFAULT.color)
                 .setAuthor(user.getEffectiveName(), null, user.getEffectiveAvatarUrl())
@@ -139,17 +167,13 @@ public class BlackjackCommand extends Command {
      * Same as getEmbed except this also shows the dealer's resulting hand.
      *
      * @param user the user playing blackjack.
+     * @param session the user's blackjack session.
      * @param dealerHand the revealed cards in the dealer's hand.
-     * @param playerScore the current score of the player's hand.
-     * @param dealerScore the score of the cards in the dealer's hand.
      * @return a MessageEmbed for the blackjack game with dealer cards revealed.
      */
-    public static EmbedBuilder getResultEmbed(User user, List<Cards> dealerHand, int playerScore, int dealerScore) {
-        Blackjack game = games.get(user.getId());
-        List<Cards> playerHand = game.playerHand();
-
-        String userText = printCards(playerHand) + "\n\nValue: " + playerScore;
-        String dealerText = printCards(dealerHand) + "\n\nValue: " + dealerScore;
+    private static EmbedBuilder getResultEmbed(User user, Session session, BlackjackHand dealerHand) {
+        String userText = session.playerHand.print() + "\n\nValue: " + session.playerHand.getValue();
+        String dealerText = dealerHand.print() + "\n\nValue: " + dealerHand.getValue();
         return new EmbedBuilder()
                 .setColor(EmbedColor.DEFAULT.color)
                 .setAuthor(user.getEffectiveName(), null, user.getEffectiveAvatarUrl())
@@ -160,77 +184,83 @@ public class BlackjackCommand extends Command {
     /**
      * Dealer will draw cards from the deck following standard blackjack rules.
      *
-     * @param game the instance of the blackjack game.
+     * @param session the user's blackjack session.
      * @param playerScore the current score of the player's hand.
-     * @return a list of revealed cards in the dealer's hand.
+     * @return the revealed cards in the dealer's hand.
      */
-    private static List<Cards> revealDealerHand(Blackjack game, int playerScore) {
-        List<Cards> dealerHand = new ArrayList<>();
-        dealerHand.add(game.dealerCard());
-        int dealerScore = game.dealerCard().value;
+    private static BlackjackHand revealDealerHand(Session session, int playerScore) {
+        BlackjackHand dealerHand = new BlackjackHand();
+        dealerHand.add(session.dealerCard);
         do {
-            Cards card = decks.get(game.userID()).pop();
-            dealerScore += card.value;
-            if (dealerScore > 21) {
-                for (Cards curr : dealerHand) {
-                    if (curr.isAce) {
-                        dealerScore -= 10;
-                        break;
-                    }
-                }
-            }
-            dealerHand.add(card);
-        } while (dealerScore < playerScore && dealerScore < 17);
+            dealerHand.add(session.shoe.draw());
+        } while (dealerHand.getValue() < playerScore && dealerHand.getValue() < 17);
         return dealerHand;
     }
 
+    /**
+     * Checks that a session is still playing the game shown on a message.
+     * The caller must hold the session's lock.
+     */
+    private static boolean isActive(Session session, long componentSession) {
+        return session.playing && session.componentSession == componentSession;
+    }
+
     /**
      * Draws a card from the deck and updates score.
      *
      * @param user the user playing blackjack.
      * @param bet the amount of money the player bet with.
-     * @param uuid the UUID for the embed buttons.
-     * @return a MessageEmbed with the updated game status.
+     * @param componentSession the session ID for the embed buttons.
+     * @return a MessageEmbed with the updated game status, or null if the game already ended.
      */
-    public static MessageEmbed hit(WalletHandler walletHandler, User user, long bet, String uuid) {
-        // Update game stats
-        games.get(user.getId()).hit();
-        Blackjack game = games.get(user.getId());
-        int score = calculateValue(game.playerHand());
+    public static MessageEmbed hit(WalletHandler walletHandler, User user, long bet, long componentSession) {
+        Session session = sessions.get(user.getIdLong());
+        if (session == null) return null;
+        session.lock.lock();
+        try {
+            // Another press may have ended the game while we waited for the lock
+            if (!isActive(session, componentSession)) return null;
 
-        // Send updated embed
-        EmbedBuilder embed;
-        String currency = FlopBot.COIN_EMOJI;
-        if (score >= 21) {
-            if (score > 21) {
-                // Player busted
-                List<Cards> dealerHand = List.of(game.dealerCard(), decks.get(game.userID()).pop());
-                int dealerScore = calculateValue(dealerHand);
-                embed = getResultEmbed(user, dealerHand, score, dealerScore);
-                embed.setDescription("Result: Bust " + currency + " -" + bet);
-                embed.setColor(EmbedColor.ERROR.color);
-            } else {
-                // Player has 21 cards
-                List<Cards> dealerHand = revealDealerHand(game, score);
-                int dealerScore = calculateValue(dealerHand);
-                embed = getResultEmbed(user, dealerHand, score, dealerScore);
-                if (dealerScore == 21) {
-                    // Player and dealer tied
-                    embed.setDescription("Result: Push, money back");
-                    embed.setColor(EmbedColor.WARNING.color);
-                    walletHandler.sendCoins(user.getIdLong(), bet);
+            // Update game stats
+            session.playerHand.add(session.shoe.draw());
+            int score = session.playerHand.getValue();
+
+            // Send updated embed
+            EmbedBuilder embed;
+            String currency = FlopBot.COIN_EMOJI;
+            if (score >= 21) {
+                if (score > 21) {
+                    // Player busted
+                    BlackjackHand dealerHand = new BlackjackHand();
+                    dealerHand.add(session.dealerCard);
+                    dealerHand.add(session.shoe.draw());
+                    embed = getResultEmbed(user, session, dealerHand);
+                    embed.setDescription("Result: Bust " + currency + " -" + bet);
+                    embed.setColor(EmbedColor.ERROR.color);
                 } else {
-                    // Player wins
-                    embed.setDescription("Result: Win " + currency + " " + (2*bet));
-                    embed.setColor(EmbedColor.SUCCESS.color);
-                    walletHandler.sendCoins(user.getIdLong(), (2*bet));
+                    // Player has 21 cards
+                    BlackjackHand dealerHand = revealDealerHand(session, score);
+                    embed = getResultEmbed(user, session, dealerHand);
+                    if (dealerHand.getValue() == 21) {
+                        // Player and dealer tied
+                        embed.setDescription("Result: Push, money back");
+                        embed.setColor(EmbedColor.WARNING.color);
+                        walletHandler.sendCoins(user.getIdLong(), bet, LedgerEntry.Reason.PAYOUT);
+                    } else {
+                        // Player wins
+                        embed.setDescription("Result: Win " + currency + " " + (2*bet));
+                        embed.setColor(EmbedColor.SUCCESS.color);
+                        walletHandler.sendCoins(user.getIdLong(), (2*bet), LedgerEntry.Reason.PAYOUT);
+                    }
                 }
+                endGame(session);
+            } else {
+                embed = getEmbed(user, session);
             }
-            endGame(user.getId(), uuid);
-        } else {
-            embed = getEmbed(user, score);
+            return embed.build();
+        } finally {
+            session.lock.unlock();
         }
-        return embed.build();
     }
 
     /**
@@ -238,97 +268,60 @@ public class BlackjackCommand extends Command {
      *
      * @param user the user playing blackjack.
      * @param bet the amount of money the player bet with.
-     * @param uuid the UUID for the embed buttons.
-     * @return a MessageEmbed with the updated game status.
+     * @param componentSession the session ID for the embed buttons.
+     * @return a MessageEmbed with the updated game status, or null if the game already ended.
      */
-    public static MessageEmbed stand(WalletHandler walletHandler, User user, long bet, String uuid) {
-        // Get player stats
-        Blackjack game = games.get(user.getId());
-        int score = calculateValue(game.playerHand());
+    public static MessageEmbed stand(WalletHandler walletHandler, User user, long bet, long componentSession) {
+        Session session = sessions.get(user.getIdLong());
+        if (session == null) return null;
+        session.lock.lock();
+        try {
+            if (!isActive(session, componentSession)) return null;
 
-        // Get dealer stats
-        List<Cards> dealerHand = revealDealerHand(game, score);
-        int dealerScore = calculateValue(dealerHand);
+            // Get player and dealer stats
+            int score = session.playerHand.getValue();
+            BlackjackHand dealerHand = revealDealerHand(session, score);
+            int dealerScore = dealerHand.getValue();
 
-        // Send updated embed
-        String currency = FlopBot.COIN_EMOJI;
-        EmbedBuilder embed = getResultEmbed(user, dealerHand, score, dealerScore);
-        if (dealerScore > score) {
-            if (dealerScore > 21) {
-                // Dealer busted
-                embed.setDescription("Result: Dealer bust " + currency + " " + (2*bet));
-                embed.setColor(EmbedColor.SUCCESS.color);
-                walletHandler.sendCoins(user.getIdLong(), (2*bet));
+            // Send updated embed
+            String currency = FlopBot.COIN_EMOJI;
+            EmbedBuilder embed = getResultEmbed(user, session, dealerHand);
+            if (dealerScore > score) {
+                if (dealerScore > 21) {
+                    // Dealer busted
+                    embed.setDescription("Result: Dealer bust " + currency + " " + (2*bet));
+                    embed.setColor(EmbedColor.SUCCESS.color);
+                    walletHandler.sendCoins(user.getIdLong(), (2*bet), LedgerEntry.Reason.PAYOUT);
+                } else {
+                    // Dealer wins
+                    embed.setDescription("Result: Loss " + currency + " -" + bet);
+                    embed.setColor(EmbedColor.ERROR.color);
+                }
+            } else if (dealerScore == score) {
+                // Player and dealer tie (push)
+                embed.setDescription("Result: Push, money back");
+                embed.setColor(EmbedColor.WARNING.color);
+                walletHandler.sendCoins(user.getIdLong(), bet, LedgerEntry.Reason.PAYOUT);
             } else {
-                // Dealer wins
-                embed.setDescription("Result: Loss " + currency + " -" + bet);
-                embed.setColor(EmbedColor.ERROR.color);
+                // Player wins
+                embed.setDescription("Result: Win " + currency + " " + (2*bet));
+                embed.setColor(EmbedColor.SUCCESS.color);
+                walletHandler.sendCoins(user.getIdLong(), (2*bet), LedgerEntry.Reason.PAYOUT);
             }
-        } else if (dealerScore == score) {
-            // Player and dealer tie (push)
-            embed.setDescription("Result: Push, money back");
-            embed.setColor(EmbedColor.WARNING.color);
-            walletHandler.sendCoins(user.getIdLong(), bet);
-        } else {
-            // Player wins
-            embed.setDescription("Result: Win " + currency + " " + (2*bet));
-            embed.setColor(EmbedColor.SUCCESS.color);
-            walletHandler.sendCoins(user.getIdLong(), (2*bet));
-        }
-        endGame(user.getId(), uuid);
-        return embed.build();
-    }
-
-    /**
-     * Ends the game by deleting stats and disabling the embed buttons.
-     *
-     * @param userID the ID of the user playing this game.
-     * @param uuid the UUID for the embed buttons.
-     */
-    public static void endGame(String userID, String uuid) {
-        games.remove(userID);
-        resetTimers.remove(userID).cancel(true);
-        List<Button> old = ButtonHandler.buttons.get(uuid);
-        List<Button> components = new ArrayList<>();
-        components.add(old.get(0).asDisabled());
-        components.add(old.get(1).asDisabled());
-        ButtonHandler.buttons.put(uuid, components);
-    }
-
-    /**
-     * Prints playing cards into a string using their respective emojis.
-     *
-     * @param hand the list of card enums in this player's hand.
-     * @return a string with all cards in emoji form.
-     */
-    public static String printCards(List<Cards> hand) {
-        StringBuilder text = new StringBuilder();
-        for (Cards card : hand) {
-            text.append(card.emoji).append(" ");
+            endGame(session);
+            return embed.build();
+        } finally {
+            session.lock.unlock();
         }
-        return text.toString();
     }
 
     /**
-     * Calculate the value of the cards in a player's hand.
-     * Card values are based on the blackjack rule set.
+     * Ends the game and disables the embed buttons. The session and its shoe are kept for the next game.
      *
-     * @param hand the list of card enums in this player's hand.
-     * @return the integer value of the player's cards.
+     * @param session the user's blackjack session.
      */
-    public static int calculateValue(List<Cards> hand) {
-        int value = 0;
-        for (Cards card : hand) {
-            value += card.value;
-        }
-        if (value > 21) {
-            for (Cards card : hand) {
-                if (card.isAce) {
-                    value -= 10;
-                    break;
-                }
-            }
-        }
-        return value;
+    private static void endGame(Session session) {
+        session.playing = false;
+        ButtonHandler.components.update(session.componentSession, old -> List.of(old.get(0).asDisabled(), old.get(1).asDisabled()));
     }
 }
@@ -0,0 +1,45 @@
+package flopbot.commands.casino;
+
+import flopbot.util.enums.Cards;
+
+/**
+ * A blackjack hand that keeps its score and printed form up to date as cards are added.
+ * The score is a running total with every ace counted as 11, plus a count of those soft aces;
+ * while the total is over 21, soft aces are turned into 1s one at a time.
+ * Not thread-safe; callers must synchronize access.
+ */
+public class BlackjackHand {
+
+    private final StringBuilder text = new StringBuilder();
+    private int total;
+    private int softAces;
+
+    /**
+     * Adds a card and rescores the hand in constant time.
+     *
+     * @param card the card to add.
+     */
+    public void add(Cards card) {
+        total += card.value;
+        if (card.isAce) softAces++;
+        while (total > 21 && softAces > 0) {
+            total -= 10;
+            softAces--;
+        }
+        text.append(card.text);
+    }
+
+    /**
+     * @return the best blackjack value of the hand.
+     */
+    public int getValue() {
+        return total;
+    }
+
+    /**
+     * @return the cards in this hand in emoji form.
+     */
+    public String print() {
+        return text.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package flopbot.commands.casino;
 
+import flopbot.data.cache.LedgerEntry;
 import flopbot.util.NumberFormat;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.User;
@@ -13,9 +14,8 @@ import flopbot.handlers.WalletHandler;
 import flopbot.util.embeds.EmbedColor;
 import flopbot.util.embeds.EmbedUtils;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Command that plays a coinflip casino game.
@@ -44,14 +44,13 @@ public class CoinflipCommand extends Command {
 
         // Charge player for bet
         WalletHandler walletHandler = bot.walletHandler;
-        long balance = walletHandler.getBalance(user.getIdLong());
-        if (balance < bet) {
+        if (walletHandler.removeCoins(user.getIdLong(), bet, LedgerEntry.Reason.BET) == WalletHandler.INSUFFICIENT_FUNDS) {
+            long balance = walletHandler.getBalance(user.getIdLong());
             String currency = FlopBot.COIN_EMOJI + " **" + balance + "**";
             String text = "You don't have enough money for this bet. You currently have " + currency + " in cash.";
             event.replyEmbeds(EmbedUtils.createError(text)).setEphemeral(true).queue();
             return;
         }
-        walletHandler.removeCoins(user.getIdLong(), bet);
 
         // Flip coin and calculate result
         EmbedBuilder embed = new EmbedBuilder();
@@ -63,7 +62,7 @@ public class CoinflipCommand extends Command {
             if (choice.equalsIgnoreCase("heads")) {
                 embed.setColor(EmbedColor.SUCCESS.color);
                 embed.setDescription("Congratulations, the coin landed on heads!\nYou won " + winnings);
-                walletHandler.sendCoins(user.getIdLong(), bet*2);
+                walletHandler.sendCoins(user.getIdLong(), bet*2, LedgerEntry.Reason.PAYOUT);
             } else {
                 embed.setColor(EmbedColor.ERROR.color);
                 embed.setDescription("Sorry, the coin landed on heads.\nYou lost " + losings);
@@ -73,7 +72,7 @@ public class CoinflipCommand extends Command {
             if (choice.equalsIgnoreCase("tails")) {
                 embed.setColor(EmbedColor.SUCCESS.color);
                 embed.setDescription("Congratulations, the coin landed on tails!\nYou won " + winnings);
-                walletHandler.sendCoins(user.getIdLong(), bet*2);
+                walletHandler.sendCoins(user.getIdLong(), bet*2, LedgerEntry.Reason.PAYOUT);
             } else {
                 embed.setColor(EmbedColor.ERROR.color);
                 embed.setDescription("Sorry, the coin landed on tails.\nYou lost " + losings);
@@ -81,13 +80,7 @@ public class CoinflipCommand extends Command {
         }
 
         // Send message response
-        event.reply(":coin: The coin flips into the air...").queue(msg -> {
-            new Timer().schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    msg.editOriginalEmbeds(embed.build()).queue();
-                }
-            }, 2500L);
-        });
+        event.reply(":coin: The coin flips into the air...").queue(msg ->
+                bot.scheduler.schedule(() -> bot.edits.submit(event.getIdLong(), msg.editOriginalEmbeds(embed.build())), 2500L, TimeUnit.MILLISECONDS));
     }
 }
@@ -3,8 +3,12 @@ package flopbot.commands.casino;
 import flopbot.FlopBot;
 import flopbot.commands.Category;
 import flopbot.commands.Command;
+import flopbot.data.cache.LedgerEntry;
 import flopbot.handlers.WalletHandler;
 import flopbot.handlers.ButtonHandler;
+import flopbot.handlers.ComponentId;
+import flopbot.handlers.ComponentId.Action;
+import flopbot.handlers.ComponentId.Game;
 import flopbot.util.NumberFormat;
 import flopbot.util.embeds.EmbedColor;
 import flopbot.util.embeds.EmbedUtils;
@@ -12,12 +16,14 @@ import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 
-import java.util.*;
-import java.util.concurrent.*;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Command that plays the crash gambling game.
@@ -26,8 +32,8 @@ import java.util.concurrent.*;
  */
 public class CrashCommand extends Command {
 
-    public static final HashMap<Long, CrashGame> games = new HashMap<>();
-    private static final ScheduledExecutorService tasks = Executors.newScheduledThreadPool(10);
+    /** Engine that runs every crash game, set once when the command is created */
+    private static CrashEngine engine;
 
     public CrashCommand(FlopBot bot) {
         super(bot);
@@ -36,25 +42,46 @@ public class CrashCommand extends Command {
         this.category = Category.CASINO;
         this.args.add(new OptionData(OptionType.INTEGER, "bet", "The amount you want to wager", true)
                 .setMinValue(1));
+        this.args.add(new OptionData(OptionType.BOOLEAN, "shared", "Join this channel's shared round instead of playing alone", false));
+        engine = new CrashEngine(bot.walletHandler, bot.scheduler, bot.edits);
     }
 
     @Override
     public void execute(SlashCommandInteractionEvent event) {
         User user = event.getUser();
         long bet = event.getOption("bet").getAsLong();
+        OptionMapping shared = event.getOption("shared");
+        if (shared != null && shared.getAsBoolean()) {
+            playRound(event, user, bet);
+            return;
+        }
 
         // Check if the user is already playing a game.
-        if (games.containsKey(user.getIdLong())) {
+        if (engine.isPlaying(user.getIdLong())) {
             event.replyEmbeds(EmbedUtils.createError("You are currently playing a game of crash!"))
                     .setEphemeral(true)
                     .queue();
             return;
         }
 
-        // Check for sufficient funds.
+        // Determine maximum multiplier (capped at 30).
+        double maxMultiplier = rollMaxMultiplier();
+
+        // Reserve the game before charging, so two commands at once can't both start one.
+        long session = ComponentId.newSession();
+        CrashEngine.CrashGame game = engine.create(user, session, bet, maxMultiplier);
+        if (game == null) {
+            event.replyEmbeds(EmbedUtils.createError("You are currently playing a game of crash!"))
+                    .setEphemeral(true)
+                    .queue();
+            return;
+        }
+
+        // Charge player for bet if they have sufficient funds.
         WalletHandler walletHandler = bot.walletHandler;
-        long balance = walletHandler.getBalance(user.getIdLong());
-        if (balance < bet) {
+        if (walletHandler.removeCoins(user.getIdLong(), bet, LedgerEntry.Reason.BET) == WalletHandler.INSUFFICIENT_FUNDS) {
+            engine.cancel(game);
+            long balance = walletHandler.getBalance(user.getIdLong());
             String currency = FlopBot.COIN_EMOJI + " **" + balance + "**";
             String errorText = "You don't have enough money for this bet. You currently have " + currency + " in cash.";
             event.replyEmbeds(EmbedUtils.createError(errorText))
@@ -62,10 +89,10 @@ public class CrashCommand extends Command {
                     .queue();
             return;
         }
-        walletHandler.removeCoins(user.getIdLong(), bet);
 
         // 3% chance of an instant crash.
         if (ThreadLocalRandom.current().nextDouble() <= 0.03) {
+            engine.cancel(game);
             EmbedBuilder embed = new EmbedBuilder()
                     .setAuthor(user.getEffectiveName(), null, user.getEffectiveAvatarUrl())
                     .setColor(EmbedColor.ERROR.color)
@@ -78,10 +105,6 @@ public class CrashCommand extends Command {
             return;
         }
 
-        // Determine maximum multiplier (capped at 30).
-        double randomMultiplier = 0.01 + (0.99 / ThreadLocalRandom.current().nextDouble());
-        double maxMultiplier = Math.min(randomMultiplier, 30);
-
         // Build initial embed.
         EmbedBuilder embed = new EmbedBuilder()
                 .setColor(EmbedColor.DEFAULT.color)
@@ -90,93 +113,98 @@ public class CrashCommand extends Command {
                 .addField("Multiplier", "x1.00", true)
                 .addField("Profit", FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(bet), true);
 
-        // Create a unique identifier for the cashout button.
-        String uuid = user.getId() + ":" + UUID.randomUUID();
-        Button cashoutButton = Button.primary("crash:cashout:" + uuid + ":" + bet, "Cashout");
-        ButtonHandler.buttons.put(uuid, List.of(cashoutButton));
-
-        // Send initial message and start game loop.
-        event.replyEmbeds(embed.build()).addActionRow(cashoutButton).queue(msg -> {
-            ScheduledFuture<?> task = tasks.scheduleAtFixedRate(() -> {
-                CrashGame game = games.get(user.getIdLong());
-                if (game == null) return; // Game may have ended via cashout.
-
-                game.currMultiplier += 0.1;
-                String multiplierString = "x" + String.format("%.2f", game.currMultiplier);
-
-                if (game.currMultiplier >= game.maxMultiplier) {
-                    // Game crashes.
-                    EmbedBuilder crashEmbed = new EmbedBuilder()
-                            .setAuthor(user.getEffectiveName(), null, user.getEffectiveAvatarUrl())
-                            .setColor(EmbedColor.ERROR.color)
-                            .setDescription("Your bet: " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(bet))
-                            .addField("Crashed At", multiplierString, true)
-                            .addField("Loss", FlopBot.COIN_EMOJI + " -" + NumberFormat.FORMATTER.format(bet), true);
-                    games.remove(user.getIdLong()).task.cancel(true);
-                    Button disabledButton = ButtonHandler.buttons.remove(uuid).get(0).asDisabled();
-                    msg.editOriginalEmbeds(crashEmbed.build()).setActionRow(disabledButton).queue();
-                } else {
-                    int profit = (int) (bet * game.currMultiplier);
-                    EmbedBuilder updateEmbed = new EmbedBuilder()
-                            .setColor(EmbedColor.DEFAULT.color)
-                            .setAuthor(user.getEffectiveName(), null, user.getEffectiveAvatarUrl())
-                            .setDescription("Your bet: " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(bet))
-                            .addField("Multiplier", multiplierString, true)
-                            .addField("Profit", FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(profit), true);
-                    msg.editOriginalEmbeds(updateEmbed.build()).queue();
-                }
-            }, 1500, 1500, TimeUnit.MILLISECONDS);
-
-            games.put(user.getIdLong(), new CrashGame(task, 1.0, maxMultiplier, bet));
-        });
+        // Create the cashout button for this session.
+        Button cashoutButton = Button.primary(ComponentId.encode(Game.CRASH, Action.CASHOUT, user.getIdLong(), session, bet, 0), "Cashout");
+        ButtonHandler.components.put(session, List.of(cashoutButton));
+
+        // Send initial message and hand the game to the shared tick loop.
+        event.replyEmbeds(embed.build()).addActionRow(cashoutButton).queue(
+                hook -> engine.start(game, hook),
+                failure -> {
+                    // The player never saw the game, so give the bet back
+                    engine.cancel(game);
+                    ButtonHandler.components.remove(session);
+                    walletHandler.sendCoins(user.getIdLong(), bet, LedgerEntry.Reason.ADJUSTMENT);
+                });
     }
 
     /**
-     * Cashes out a running crash game, awarding the profit.
-     *
-     * @param walletHandler the wallet handler to update the user's balance.
-     * @param user          the user cashing out.
-     * @return a MessageEmbed displaying the cashout result.
+     * Places a bet on the channel's shared round, opening a new round if none is taking bets.
+     * Only the command that opens a round sends its message; everyone else gets a private confirmation.
      */
-    public static MessageEmbed cashout(WalletHandler walletHandler, User user) {
-        CrashGame game = games.remove(user.getIdLong());
-        game.task.cancel(true);
+    private void playRound(SlashCommandInteractionEvent event, User user, long bet) {
+        // Charge player for bet if they have sufficient funds.
+        WalletHandler walletHandler = bot.walletHandler;
+        if (walletHandler.removeCoins(user.getIdLong(), bet, LedgerEntry.Reason.BET) == WalletHandler.INSUFFICIENT_FUNDS) {
+            long balance = walletHandler.getBalance(user.getIdLong());
+            String currency = FlopBot.COIN_EMOJI + " **" + balance + "**";
+            String errorText = "You don't have enough money for this bet. You currently have " + currency + " in cash.";
+            event.replyEmbeds(EmbedUtils.createError(errorText))
+                    .setEphemeral(true)
+                    .queue();
+            return;
+        }
 
-        int profit = (int) (game.bet * game.currMultiplier);
-        walletHandler.sendCoins(user.getIdLong(), profit);
+        // Join the open round, 3% of rounds crash instantly.
+        long session = ComponentId.newSession();
+        double maxMultiplier = (ThreadLocalRandom.current().nextDouble() <= 0.03) ? 1.0 : rollMaxMultiplier();
+        CrashRound round = engine.openRound(event.getChannel().getIdLong(), session, maxMultiplier);
+        CrashRound.Player player = (round != null) ? round.join(user, bet) : null;
+        if (player == null) {
+            walletHandler.sendCoins(user.getIdLong(), bet, LedgerEntry.Reason.ADJUSTMENT);
+            String errorText = (round == null)
+                    ? "A crash round is already running in this channel, join the next one!"
+                    : "You already joined this crash round!";
+            event.replyEmbeds(EmbedUtils.createError(errorText))
+                    .setEphemeral(true)
+                    .queue();
+            return;
+        }
+        if (round.session != session) {
+            String text = "You joined the crash round with " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(bet) + "!";
+            event.replyEmbeds(EmbedUtils.createSuccess(text)).setEphemeral(true).queue();
+            return;
+        }
 
-        String multiplierString = "x" + String.format("%.2f", game.currMultiplier);
-        return new EmbedBuilder()
-                .setColor(EmbedColor.SUCCESS.color)
-                .setAuthor(user.getEffectiveName(), null, user.getEffectiveAvatarUrl())
-                .setDescription("Your bet: " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(game.bet))
-                .addField("Multiplier", multiplierString, true)
-                .addField("Win", FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(profit), true)
-                .build();
+        // This command opened the round, so it sends the shared message. Anyone in the round may press the button.
+        Button cashoutButton = Button.primary(ComponentId.encode(Game.CRASH, Action.CASHOUT, 0, session, 0, 0), "Cashout");
+        ButtonHandler.components.put(session, List.of(cashoutButton));
+        event.replyEmbeds(CrashEngine.getRoundEmbed(round)).addActionRow(cashoutButton).queue(
+                hook -> engine.start(round, hook),
+                failure -> {
+                    engine.cancel(round);
+                    ButtonHandler.components.remove(session);
+                });
     }
 
     /**
-     * Represents a Crash game and stores game data.
+     * @return a random multiplier to crash at, capped at 30.
      */
-    public static class CrashGame {
-        final ScheduledFuture<?> task;
-        double currMultiplier;
-        final double maxMultiplier;
-        final long bet;
-
-        /**
-         * Constructs a CrashGame.
-         *
-         * @param task          the scheduled task for this game.
-         * @param currMultiplier the current multiplier.
-         * @param maxMultiplier the multiplier at which the game crashes.
-         * @param bet           the bet amount.
-         */
-        public CrashGame(ScheduledFuture<?> task, double currMultiplier, double maxMultiplier, long bet) {
-            this.task = task;
-            this.currMultiplier = currMultiplier;
-            this.maxMultiplier = maxMultiplier;
-            this.bet = bet;
-        }
+    private static double rollMaxMultiplier() {
+        double randomMultiplier = 0.01 + (0.99 / ThreadLocalRandom.current().nextDouble());
+        return Math.min(randomMultiplier, 30);
+    }
+
+    /**
+     * Cashes out a running crash game, awarding the profit.
+     *
+     * @param user the user cashing out.
+     * @param hook a hook for the game's message, used to show the result.
+     * @return true if the game was cashed out, or false if it already ended.
+     */
+    public static boolean cashout(User user, InteractionHook hook) {
+        return engine.cashout(user, hook);
+    }
+
+    /**
+     * Cashes a user out of the shared round in a channel.
+     *
+     * @param user the user cashing out.
+     * @param channelID the channel the round is running in.
+     * @param session the session ID of the round's buttons.
+     * @return a MessageEmbed to show privately to the user.
+     */
+    public static MessageEmbed cashoutRound(User user, long channelID, long session) {
+        return engine.cashout(user, channelID, session);
     }
 }
@@ -0,0 +1,335 @@
+package flopbot.commands.casino;
+
+import flopbot.FlopBot;
+import flopbot.data.cache.LedgerEntry;
+import flopbot.handlers.ButtonHandler;
+import flopbot.handlers.WalletHandler;
+import flopbot.util.EditCoalescer;
+import flopbot.util.NumberFormat;
+import flopbot.util.TaskScheduler;
+import flopbot.util.collections.ConcurrentLongObjectMap;
+import flopbot.util.embeds.EmbedColor;
+import flopbot.util.embeds.EmbedUtils;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every live crash game from one shared tick loop.
+ * Each tick raises the multiplier of all running games by 0.1 and crashes the ones that reached their limit.
+ * A game leaves the running state exactly once, through a compare-and-set to either cashed out or crashed,
+ * so a cashout racing a crash can never both pay out and lose. Message edits go through the edit coalescer,
+ * so a tick that lands while the previous edit is still in flight replaces any edit waiting behind it, and
+ * the final cashout or crash result is always sent after every tick before it.
+ * Shared rounds run on the same loop with one leaderboard message per channel, so their edits scale with
+ * channels rather than players.
+ */
+public class CrashEngine {
+
+    public static final long TICK_MILLIS = 1500;
+
+    /** Ticks a shared round stays open for bets before the multiplier starts climbing */
+    public static final int BETTING_TICKS = 6;
+
+    /** Most players listed on a round's leaderboard */
+    private static final int LEADERBOARD_SIZE = 20;
+
+    private static final int RUNNING = 0;
+    private static final int CASHED_OUT = 1;
+    private static final int CRASHED = 2;
+
+    private final WalletHandler walletHandler;
+    private final EditCoalescer edits;
+    private final ConcurrentLongObjectMap<CrashGame> games = new ConcurrentLongObjectMap<>();
+    private final ConcurrentLongObjectMap<CrashRound> rounds = new ConcurrentLongObjectMap<>();
+
+    /**
+     * Starts the tick loop.
+     *
+     * @param walletHandler the wallet handler to pay winnings with.
+     * @param scheduler the scheduler to tick on.
+     * @param edits the coalescer to send message edits through.
+     */
+    public CrashEngine(WalletHandler walletHandler, TaskScheduler scheduler, EditCoalescer edits) {
+        this.walletHandler = walletHandler;
+        this.edits = edits;
+        scheduler.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reserves a game for a user. The game doesn't tick until {@link #start} attaches its message.
+     *
+     * @return the new game, or null if the user already has one.
+     */
+    public CrashGame create(User user, long session, long bet, double maxMultiplier) {
+        CrashGame game = new CrashGame(user, session, bet, maxMultiplier);
+        return (games.putIfAbsent(user.getIdLong(), game) == null) ? game : null;
+    }
+
+    /**
+     * Starts ticking a game once its message has been sent.
+     */
+    public void start(CrashGame game, InteractionHook hook) {
+        game.hook = hook;
+    }
+
+    /**
+     * Drops a reserved game that never started, e.g. because the bet couldn't be paid.
+     */
+    public void cancel(CrashGame game) {
+        games.remove(game.userID, game);
+    }
+
+    public boolean isPlaying(long userID) {
+        return games.containsKey(userID);
+    }
+
+    /**
+     * Cashes out a running game, paying the bet times the current multiplier.
+     * The result is sent through the edit coalescer like every tick, so it always lands after them.
+     *
+     * @param user the user cashing out.
+     * @param hook a hook for the game's message, such as the deferred button interaction.
+     * @return true if the game was cashed out, or false if the user has no running game.
+     */
+    public boolean cashout(User user, InteractionHook hook) {
+        CrashGame game = games.get(user.getIdLong());
+        if (game == null) return false;
+        int ticks = game.ticks;
+        if (!game.state.compareAndSet(RUNNING, CASHED_OUT)) return false;
+        games.remove(game.userID, game);
+
+        double multiplier = multiplier(ticks);
+        long profit = (long) (game.bet * multiplier);
+        walletHandler.sendCoins(game.userID, profit, LedgerEntry.Reason.PAYOUT);
+        MessageEmbed embed = new EmbedBuilder()
+                .setColor(EmbedColor.SUCCESS.color)
+                .setAuthor(game.name, null, game.avatarUrl)
+                .setDescription("Your bet: " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(game.bet))
+                .addField("Multiplier", format(multiplier), true)
+                .addField("Win", FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(profit), true)
+                .build();
+        finish(game.session, hook, embed);
+        return true;
+    }
+
+    /**
+     * Finds the round open for bets in a channel, or opens a new one if the channel has none.
+     *
+     * @return the round, or null if a round in this channel is already past betting.
+     */
+    public CrashRound openRound(long channelID, long session, double maxMultiplier) {
+        CrashRound created = new CrashRound(channelID, session, maxMultiplier, BETTING_TICKS);
+        CrashRound round = rounds.putIfAbsent(channelID, created);
+        if (round == null) return created;
+        return (round.state == CrashRound.BETTING) ? round : null;
+    }
+
+    /**
+     * Starts ticking a round once its leaderboard message has been sent.
+     */
+    public void start(CrashRound round, InteractionHook hook) {
+        round.hook = hook;
+    }
+
+    /**
+     * Drops a round whose message could not be sent, refunding everyone who joined.
+     */
+    public void cancel(CrashRound round) {
+        round.close();
+        rounds.remove(round.channelID, round);
+        for (CrashRound.Player player : round.players.values()) {
+            if (player.result.compareAndSet(CrashRound.IN, CrashRound.LOST)) {
+                walletHandler.sendCoins(player.userID, player.bet, LedgerEntry.Reason.ADJUSTMENT);
+            }
+        }
+    }
+
+    /**
+     * Cashes a player out of a shared round at the current multiplier.
+     *
+     * @param user the user cashing out.
+     * @param channelID the channel the round is running in.
+     * @param session the session ID of the round's buttons.
+     * @return an embed describing the result, to show only to this user.
+     */
+    public MessageEmbed cashout(User user, long channelID, long session) {
+        CrashRound round = rounds.get(channelID);
+        if (round == null || round.session != session) return EmbedUtils.createError("This round has already crashed!");
+        CrashRound.Player player = round.players.get(user.getIdLong());
+        if (player == null) return EmbedUtils.createError("You didn't bet on this round! Use `/crash` with `shared` to join the next one.");
+        if (round.state == CrashRound.BETTING) return EmbedUtils.createError("The round hasn't started yet!");
+
+        int ticks = round.ticks;
+        if (round.state != CrashRound.RUNNING || !player.result.compareAndSet(CrashRound.IN, ticks)) {
+            return EmbedUtils.createError("You are no longer in this round!");
+        }
+        double multiplier = multiplier(ticks);
+        long profit = (long) (player.bet * multiplier);
+        walletHandler.sendCoins(player.userID, profit, LedgerEntry.Reason.PAYOUT);
+        return EmbedUtils.createSuccess("Cashed out at **" + format(multiplier) + "** for " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(profit) + "!");
+    }
+
+    private void tick() {
+        for (CrashRound round : rounds.values()) {
+            if (round.hook == null || round.state == CrashRound.CRASHED) continue;
+            if (round.state == CrashRound.BETTING) {
+                if (--round.countdown <= 0) round.close();
+                updateRound(round);
+                continue;
+            }
+            int next = round.ticks + 1;
+            if (multiplier(next) >= round.maxMultiplier) {
+                crashRound(round);
+            } else {
+                round.ticks = next;
+                updateRound(round);
+            }
+        }
+        for (CrashGame game : games.values()) {
+            if (game.hook == null || game.state.get() != RUNNING) continue;
+            int next = game.ticks + 1;
+            if (multiplier(next) >= game.maxMultiplier) {
+                if (game.state.compareAndSet(RUNNING, CRASHED)) {
+                    crash(game, next);
+                }
+            } else {
+                game.ticks = next;
+                update(game, next);
+            }
+        }
+    }
+
+    private void update(CrashGame game, int ticks) {
+        double multiplier = multiplier(ticks);
+        MessageEmbed embed = new EmbedBuilder()
+                .setColor(EmbedColor.DEFAULT.color)
+                .setAuthor(game.name, null, game.avatarUrl)
+                .setDescription("Your bet: " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(game.bet))
+                .addField("Multiplier", format(multiplier), true)
+                .addField("Profit", FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format((long) (game.bet * multiplier)), true)
+                .build();
+        edits.submit(game.session, game.hook.editOriginalEmbeds(embed));
+    }
+
+    private void crash(CrashGame game, int ticks) {
+        games.remove(game.userID, game);
+        MessageEmbed embed = new EmbedBuilder()
+                .setAuthor(game.name, null, game.avatarUrl)
+                .setColor(EmbedColor.ERROR.color)
+                .setDescription("Your bet: " + FlopBot.COIN_EMOJI + " " + NumberFormat.FORMATTER.format(game.bet))
+                .addField("Crashed At", format(multiplier(ticks)), true)
+                .addField("Loss", FlopBot.COIN_EMOJI + " -" + NumberFormat.FORMATTER.format(game.bet), true)
+                .build();
+        finish(game.session, game.hook, embed);
+    }
+
+    /**
+     * Sends a game's final embed and disables its cashout button.
+     */
+    private void finish(long session, InteractionHook hook, MessageEmbed embed) {
+        List<Button> buttons = ButtonHandler.components.remove(session);
+        if (buttons != null) {
+            edits.submit(session, hook.editOriginalEmbeds(embed).setActionRow(buttons.getFirst().asDisabled()));
+        } else {
+            edits.submit(session, hook.editOriginalEmbeds(embed).setComponents());
+        }
+    }
+
+    private void updateRound(CrashRound round) {
+        edits.submit(round.session, round.hook.editOriginalEmbeds(getRoundEmbed(round)));
+    }
+
+    private void crashRound(CrashRound round) {
+        round.state = CrashRound.CRASHED;
+        rounds.remove(round.channelID, round);
+        for (CrashRound.Player player : round.players.values()) {
+            player.result.compareAndSet(CrashRound.IN, CrashRound.LOST);
+        }
+        List<Button> buttons = ButtonHandler.components.remove(round.session);
+        if (buttons != null) {
+            edits.submit(round.session, round.hook.editOriginalEmbeds(getRoundEmbed(round)).setActionRow(buttons.getFirst().asDisabled()));
+        } else {
+            edits.submit(round.session, round.hook.editOriginalEmbeds(getRoundEmbed(round)).setComponents());
+        }
+    }
+
+    /**
+     * Builds the leaderboard for a shared round, biggest bets first.
+     */
+    static MessageEmbed getRoundEmbed(CrashRound round) {
+        EmbedBuilder embed = new EmbedBuilder().setTitle("Crash Round");
+        if (round.state == CrashRound.BETTING) {
+            long seconds = round.countdown * TICK_MILLIS / 1000;
+            embed.setColor(EmbedColor.DEFAULT.color)
+                    .setDescription("Starting in **" + seconds + "s**! Use `/crash` with `shared` to join.");
+        } else if (round.state == CrashRound.RUNNING) {
+            embed.setColor(EmbedColor.DEFAULT.color)
+                    .setDescription("Multiplier: **" + format(multiplier(round.ticks)) + "**");
+        } else {
+            embed.setColor(EmbedColor.ERROR.color)
+                    .setDescription("Crashed at **" + format(round.maxMultiplier) + "**");
+        }
+
+        List<CrashRound.Player> players = round.players.values();
+        players.sort((a, b) -> Long.compare(b.bet, a.bet));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < Math.min(players.size(), LEADERBOARD_SIZE); i++) {
+            CrashRound.Player player = players.get(i);
+            text.append("**").append(player.name).append("** ")
+                    .append(FlopBot.COIN_EMOJI).append(" ").append(NumberFormat.FORMATTER.format(player.bet));
+            int result = player.result.get();
+            if (result >= 0) {
+                text.append(" - cashed out at ").append(format(multiplier(result)));
+            } else if (result == CrashRound.LOST) {
+                text.append(" - lost");
+            }
+            text.append("\n");
+        }
+        if (players.size() > LEADERBOARD_SIZE) {
+            text.append("...and ").append(players.size() - LEADERBOARD_SIZE).append(" more");
+        }
+        embed.addField("Players (" + players.size() + ")", text.isEmpty() ? "None yet" : text.toString(), false);
+        return embed.build();
+    }
+
+    private static double multiplier(int ticks) {
+        return 1.0 + ticks * 0.1;
+    }
+
+    private static String format(double multiplier) {
+        return "x" + String.format("%.2f", multiplier);
+    }
+
+    /**
+     * A single player's crash game.
+     */
+    public static class CrashGame {
+        final long userID;
+        final String name;
+        final String avatarUrl;
+        final long session;
+        final long bet;
+        final double maxMultiplier;
+
+        /** Multiplier steps taken so far. Written only by the tick loop */
+        volatile int ticks;
+        volatile InteractionHook hook;
+        final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        CrashGame(User user, long session, long bet, double maxMultiplier) {
+            this.userID = user.getIdLong();
+            this.name = user.getEffectiveName();
+            this.avatarUrl = user.getEffectiveAvatarUrl();
+            this.session = session;
+            this.bet = bet;
+            this.maxMultiplier = maxMultiplier;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package flopbot.commands.casino;
+
+import flopbot.util.collections.ConcurrentLongObjectMap;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A channel-wide crash round: every player bets into the same multiplier curve and shares one message.
+ * The round opens for bets for a few ticks, then climbs until it crashes. Joining is guarded by the
+ * round's monitor so nobody can join after betting closes; each player's cashout or loss is a single
+ * compare-and-set on their own state.
+ */
+public class CrashRound {
+
+    static final int BETTING = 0;
+    static final int RUNNING = 1;
+    static final int CRASHED = 2;
+
+    static final int IN = -1;
+    static final int LOST = -2;
+
+    final long channelID;
+    final long session;
+    final double maxMultiplier;
+    final ConcurrentLongObjectMap<Player> players = new ConcurrentLongObjectMap<>(4);
+
+    /** Ticks left before betting closes. Written only by the tick loop */
+    volatile int countdown;
+
+    /** Multiplier steps taken since betting closed. Written only by the tick loop */
+    volatile int ticks;
+    volatile InteractionHook hook;
+    volatile int state = BETTING;
+
+    CrashRound(long channelID, long session, double maxMultiplier, int bettingTicks) {
+        this.channelID = channelID;
+        this.session = session;
+        this.maxMultiplier = maxMultiplier;
+        this.countdown = bettingTicks;
+    }
+
+    /**
+     * Adds a player while betting is open.
+     *
+     * @return the new player, or null if betting has closed or the user already joined.
+     */
+    synchronized Player join(User user, long bet) {
+        if (state != BETTING) return null;
+        Player player = new Player(user, bet);
+        return (players.putIfAbsent(player.userID, player) == null) ? player : null;
+    }
+
+    /**
+     * Closes betting and starts the multiplier climbing.
+     */
+    synchronized void close() {
+        state = RUNNING;
+    }
+
+    /**
+     * A player's stake in the round.
+     */
+    static class Player {
+        final long userID;
+        final String name;
+        final long bet;
+
+        /** {@link #IN} while riding, the multiplier step they cashed out at, or {@link #LOST} */
+        final AtomicInteger result = new AtomicInteger(IN);
+
+        Player(User user, long bet) {
+            this.userID = user.getIdLong();
+            this.name = user.getEffectiveName();
+            this.bet = bet;
+        }
+    }
+}
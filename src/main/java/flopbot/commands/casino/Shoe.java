@@ -0,0 +1,71 @@
+package flopbot.commands.casino;
+
+import flopbot.util.enums.Cards;
+
+import java.util.SplittableRandom;
+
+/**
+ * A shoe of playing cards stored as one byte per card, dealt by advancing an index.
+ * Shuffling is an in-place Fisher-Yates pass using the shoe's own {@link SplittableRandom},
+ * split from a shared seed generator so shoes never contend on a random source.
+ * Not thread-safe; callers must synchronize access.
+ */
+public class Shoe {
+
+    private static final SplittableRandom SEEDS = new SplittableRandom();
+
+    private final byte[] cards;
+    private final SplittableRandom random;
+    private int next;
+
+    /**
+     * Creates a shuffled shoe.
+     *
+     * @param decks the number of standard decks in the shoe.
+     */
+    public Shoe(int decks) {
+        int deckSize = Cards.count();
+        cards = new byte[decks * deckSize];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = (byte) (i % deckSize);
+        }
+        random = newRandom();
+        shuffle();
+    }
+
+    private static synchronized SplittableRandom newRandom() {
+        return SEEDS.split();
+    }
+
+    /**
+     * Returns every card to the shoe and shuffles it.
+     */
+    public void shuffle() {
+        for (int i = cards.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+        next = 0;
+    }
+
+    /**
+     * Deals the next card. The shoe is never reshuffled mid-hand, since that would return cards
+     * still in play; callers reshuffle between hands while enough cards remain for a whole hand.
+     *
+     * @return the card dealt.
+     * @throws IllegalStateException if the shoe is empty.
+     */
+    public Cards draw() {
+        if (next == cards.length) throw new IllegalStateException("Shoe is empty");
+        return Cards.get(cards[next++]);
+    }
+
+    /**
+     * @return the number of cards left before the shoe runs out.
+     */
+    public int remaining() {
+        return cards.length - next;
+    }
+}
@@ -0,0 +1,77 @@
+package flopbot.commands.casino;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A slot machine theme with every possible row rendered ahead of time.
+ * A machine has three reels of three symbols, so there are 27 possible rows and 27^3 possible spins.
+ * A spin is one random int: its base-27 digits pick the top, middle, and bottom rows, and the base-3 digits
+ * of each row pick its symbols. Rendering a spin only looks up three precomputed strings.
+ */
+public class SlotTheme {
+
+    /** Symbols on each reel, and reels in each row */
+    public static final int SYMBOLS = 3;
+    public static final int ROWS = SYMBOLS * SYMBOLS * SYMBOLS;
+    public static final int SPINS = ROWS * ROWS * ROWS;
+
+    private static final String SEPARATOR = " | ";
+    private static final String MARKER = " ⬅";
+
+    public final String name;
+
+    /** Rendered rows, with the trailing newline and the middle row's marker already attached */
+    private final String[] rows = new String[ROWS];
+    private final String[] middleRows = new String[ROWS];
+
+    /** Payout multiplier for each middle row, or 0 if the row loses */
+    private final long[] payouts = new long[ROWS];
+
+    /**
+     * @param name the theme's name.
+     * @param symbols the emoji for each of the three symbols.
+     * @param paytable the payout multiplier for three of each symbol, by symbol.
+     */
+    public SlotTheme(String name, String[] symbols, long[] paytable) {
+        if (symbols.length != SYMBOLS || paytable.length != SYMBOLS) {
+            throw new IllegalArgumentException("A slot theme needs exactly " + SYMBOLS + " symbols and payouts");
+        }
+        this.name = name;
+        for (int row = 0; row < ROWS; row++) {
+            int left = row % SYMBOLS;
+            int center = (row / SYMBOLS) % SYMBOLS;
+            int right = row / (SYMBOLS * SYMBOLS);
+            String text = symbols[left] + SEPARATOR + symbols[center] + SEPARATOR + symbols[right];
+            rows[row] = text + "\n";
+            middleRows[row] = text + MARKER + "\n";
+            payouts[row] = (left == center && center == right) ? paytable[left] : 0;
+        }
+    }
+
+    /**
+     * @return a random spin, valid for every theme.
+     */
+    public static int spin() {
+        return ThreadLocalRandom.current().nextInt(SPINS);
+    }
+
+    /**
+     * @param spin a spin from {@link #spin()}.
+     * @return the payout multiplier for the middle row, or 0 if the spin loses.
+     */
+    public long getPayout(int spin) {
+        return payouts[(spin / ROWS) % ROWS];
+    }
+
+    public String getTopRow(int spin) {
+        return rows[spin % ROWS];
+    }
+
+    public String getMiddleRow(int spin) {
+        return middleRows[(spin / ROWS) % ROWS];
+    }
+
+    public String getBottomRow(int spin) {
+        return rows[spin / (ROWS * ROWS)];
+    }
+}
@@ -9,18 +9,36 @@ import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import flopbot.FlopBot;
 import flopbot.commands.Category;
 import flopbot.commands.Command;
+import flopbot.data.cache.LedgerEntry;
 import flopbot.handlers.WalletHandler;
+import flopbot.util.collections.ConcurrentLongObjectMap;
 import flopbot.util.embeds.EmbedColor;
 import flopbot.util.embeds.EmbedUtils;
 
-import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 public class SlotsCommand extends Command {
 
-    private final Map<Long, String> USER_THEMES;
-    private final Map<String, List<String>> THEMES;
+    /** Payout multiplier for three of a kind, the same for every symbol unless a theme says otherwise */
+    private static final long[] DEFAULT_PAYTABLE = {9, 9, 9};
+
+    /** Store themed slot emojis, with every row rendered up front */
+    private static final Map<String, SlotTheme> THEMES = Map.of(
+            "fruity", new SlotTheme("fruity", new String[]{"\uD83C\uDF4E", "\uD83C\uDF47", "\uD83C\uDF4C"}, DEFAULT_PAYTABLE),
+            "luxury", new SlotTheme("luxury", new String[]{"\uD83D\uDCB8", "\uD83D\uDCB0", "\uD83D\uDC8E"}, DEFAULT_PAYTABLE),
+            "space", new SlotTheme("space", new String[]{"\uD83E\uDE90", "\uD83D\uDE80", "\uD83D\uDC7D"}, DEFAULT_PAYTABLE),
+            "desert", new SlotTheme("desert", new String[]{"\uD83C\uDF35", "\uD83D\uDC2A", "☀"}, DEFAULT_PAYTABLE),
+            "enchanted", new SlotTheme("enchanted", new String[]{"✨", "\uD83C\uDF44", "\uD83E\uDDDA"}, DEFAULT_PAYTABLE),
+            "sexy", new SlotTheme("sexy", new String[]{"\uD83D\uDCA6", "\uD83C\uDF51", "\uD83C\uDF46"}, DEFAULT_PAYTABLE),
+            "holiday", new SlotTheme("holiday", new String[]{"❄", "\uD83C\uDF85", "\uD83C\uDF84"}, DEFAULT_PAYTABLE),
+            "drunk", new SlotTheme("drunk", new String[]{"\uD83C\uDF78", "\uD83C\uDF7A", "\uD83C\uDF7E"}, DEFAULT_PAYTABLE),
+            "apocalypse", new SlotTheme("apocalypse", new String[]{"\uD83D\uDD25", "\uD83C\uDF2A", "\uD83C\uDF0B"}, DEFAULT_PAYTABLE),
+            "spooky", new SlotTheme("spooky", new String[]{"\uD83D\uDD78", "\uD83C\uDF83", "☠"}, DEFAULT_PAYTABLE)
+    );
+    private static final SlotTheme DEFAULT_THEME = THEMES.get("fruity");
+
+    /** The last theme each user picked */
+    private final ConcurrentLongObjectMap<SlotTheme> userThemes = new ConcurrentLongObjectMap<>();
 
     public SlotsCommand(FlopBot bot) {
         super(bot);
@@ -39,20 +57,6 @@ public class SlotsCommand extends Command {
                 .addChoice("drunk", "drunk")
                 .addChoice("apocalypse", "apocalypse")
                 .addChoice("spooky", "spooky"));
-
-        // Store themed slot emojis
-        USER_THEMES = new HashMap<>();
-        THEMES = new HashMap<>();
-        THEMES.put("fruity", List.of("\uD83C\uDF4E", "\uD83C\uDF47", "\uD83C\uDF4C"));
-        THEMES.put("luxury", List.of("\uD83D\uDCB8", "\uD83D\uDCB0", "\uD83D\uDC8E"));
-        THEMES.put("space", List.of("\uD83E\uDE90", "\uD83D\uDE80", "\uD83D\uDC7D"));
-        THEMES.put("desert", List.of("\uD83C\uDF35", "\uD83D\uDC2A", "☀"));
-        THEMES.put("enchanted", List.of("✨", "\uD83C\uDF44", "\uD83E\uDDDA"));
-        THEMES.put("sexy", List.of("\uD83D\uDCA6", "\uD83C\uDF51", "\uD83C\uDF46"));
-        THEMES.put("holiday", List.of("❄", "\uD83C\uDF85", "\uD83C\uDF84"));
-        THEMES.put("drunk", List.of("\uD83C\uDF78", "\uD83C\uDF7A", "\uD83C\uDF7E"));
-        THEMES.put("apocalypse", List.of("\uD83D\uDD25", "\uD83C\uDF2A", "\uD83C\uDF0B"));
-        THEMES.put("spooky", List.of("\uD83D\uDD78", "\uD83C\uDF83", "☠"));
     }
 
     @Override
@@ -61,67 +65,43 @@ public class SlotsCommand extends Command {
         User user = event.getUser();
         long bet = event.getOption("bet").getAsLong();
         OptionMapping themeOption = event.getOption("theme");
-        List<String> emojis;
-        if (themeOption != null) {
-            String themeName = themeOption.getAsString();
-            emojis = THEMES.get(themeName);
-            USER_THEMES.put(user.getIdLong(), themeName);
+        SlotTheme theme = (themeOption != null) ? THEMES.get(themeOption.getAsString()) : null;
+        if (theme != null) {
+            userThemes.put(user.getIdLong(), theme);
         } else {
-            String themeName = USER_THEMES.get(user.getIdLong());
-            if (themeName == null) themeName = "fruity";
-            emojis = THEMES.get(themeName);
+            theme = userThemes.get(user.getIdLong());
+            if (theme == null) theme = DEFAULT_THEME;
         }
 
         // Charge player for bet
         WalletHandler walletHandler = bot.walletHandler;
-        long balance = walletHandler.getBalance(user.getIdLong());
-        if (balance < bet) {
+        if (walletHandler.removeCoins(user.getIdLong(), bet, LedgerEntry.Reason.BET) == WalletHandler.INSUFFICIENT_FUNDS) {
+            long balance = walletHandler.getBalance(user.getIdLong());
             String currency = FlopBot.COIN_EMOJI + " **" + balance + "**";
             String text = "You don't have enough money for this bet. You currently have " + currency + " in cash.";
             event.replyEmbeds(EmbedUtils.createError(text)).setEphemeral(true).queue();
             return;
         }
-        walletHandler.removeCoins(user.getIdLong(), bet);
-
-        // Spin slot machine
-        int[] slot = new int[3]; // will hold the middle row's random numbers
 
-        StringBuilder slotMachine = new StringBuilder();
-        // We are generating 3 rows
-        for (int i = 0; i < 3; i++) {
-            // Generate an array of 3 random numbers in the range [0, 3)
-            int[] row = ThreadLocalRandom.current().ints(3, 0, 3).toArray();
-            // Build a string representation for this row using the chosen emojis
-            String rowStr = Arrays.stream(row)
-                    .mapToObj(emojis::get)
-                    .collect(Collectors.joining(" | "));
-            // Save the middle row for outcome calculation and mark it with an arrow
-            if (i == 1) {
-                slot = row;
-                rowStr += " ⬅";
-            }
-            slotMachine.append(rowStr).append("\n");
-        }
-
-        // Calculate earnings: win if all 3 numbers in the middle row are the same
-        boolean isWinner = slot[0] == slot[1] && slot[0] == slot[2];
-        long earnings = bet;
-        if (isWinner) {
-            earnings = bet * 9;
-        }
+        // Spin slot machine, win if all 3 symbols in the middle row are the same
+        int spin = SlotTheme.spin();
+        long multiplier = theme.getPayout(spin);
+        long earnings = bet * multiplier;
 
         // Build the embed message
         EmbedBuilder embed = new EmbedBuilder()
                 .setAuthor(user.getEffectiveName(), null, user.getEffectiveAvatarUrl());
-        if (isWinner) {
+        if (multiplier > 0) {
             embed.setColor(EmbedColor.SUCCESS.color);
             embed.setDescription("You won " + FlopBot.COIN_EMOJI + " " + earnings + "\n\n");
-            walletHandler.sendCoins(user.getIdLong(), earnings);
+            walletHandler.sendCoins(user.getIdLong(), earnings, LedgerEntry.Reason.PAYOUT);
         } else {
             embed.setColor(EmbedColor.ERROR.color);
             embed.setDescription("You lost " + FlopBot.COIN_EMOJI + " " + bet + "\n\n");
         }
-        embed.appendDescription(slotMachine);
+        embed.appendDescription(theme.getTopRow(spin))
+                .appendDescription(theme.getMiddleRow(spin))
+                .appendDescription(theme.getBottomRow(spin));
         event.replyEmbeds(embed.build()).queue();
     }
 }
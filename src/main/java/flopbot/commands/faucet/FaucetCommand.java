@@ -3,6 +3,8 @@ package flopbot.commands.faucet;
 import flopbot.FlopBot;
 import flopbot.commands.Category;
 import flopbot.commands.Command;
+import flopbot.data.CooldownStore;
+import flopbot.data.cache.LedgerEntry;
 import flopbot.util.embeds.EmbedColor;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
@@ -10,8 +12,6 @@ import net.dv8tion.jda.api.utils.TimeFormat;
 
 import javax.annotation.Nullable;
 import java.text.DecimalFormat;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -24,7 +24,7 @@ public class FaucetCommand extends Command {
     private static final long FAUCET_TIMEOUT = 3600000;
     private static final DecimalFormat FORMATTER = new DecimalFormat("#,###");
 
-    private final Map<Long, Long> timeouts;
+    private final CooldownStore timeouts;
     private final int minReward;
     private final int maxReward;
 
@@ -33,20 +33,20 @@ public class FaucetCommand extends Command {
         this.name = "faucet";
         this.description = "Earn free coins from the faucet every hour.";
         this.category = Category.FAUCET;
-        this.timeouts = new HashMap<>();
+        this.timeouts = new CooldownStore(bot.database, name, bot.scheduler);
         this.minReward = Integer.parseInt(bot.config.get("FAUCET_MIN_REWARD", System.getenv("FAUCET_MIN_REWARD")));
         this.maxReward = Integer.parseInt(bot.config.get("FAUCET_MAX_REWARD", System.getenv("FAUCET_MAX_REWARD")));
     }
 
     public void execute(SlashCommandInteractionEvent event) {
         long userID = event.getUser().getIdLong();
-        Long timeout = timeouts.get(userID);
+        long timeout = timeouts.tryAcquire(userID, FAUCET_TIMEOUT);
 
         EmbedBuilder embed = new EmbedBuilder();
         embed.setAuthor(event.getUser().getEffectiveName(), null, event.getUser().getEffectiveAvatarUrl());
         embed.setColor(EmbedColor.SUCCESS.color);
 
-        if (timeout != null && System.currentTimeMillis() < timeout) {
+        if (timeout != 0) {
             // On timeout
             embed.setDescription(":stopwatch: You can next use the faucet " + formatTimeout(timeout) + ".");
             embed.setColor(EmbedColor.ERROR.color);
@@ -54,8 +54,7 @@ public class FaucetCommand extends Command {
         } else {
             // Send random amount of coins between 100 - 10,000
             int randomNumber = ThreadLocalRandom.current().nextInt(minReward, maxReward + 1);
-            bot.walletHandler.sendCoins(userID, randomNumber);
-            timeouts.put(userID, System.currentTimeMillis() + FAUCET_TIMEOUT);
+            bot.walletHandler.sendCoins(userID, randomNumber, LedgerEntry.Reason.FAUCET);
 
             // Send embed reply
             embed.setDescription("You just earned " + FlopBot.COIN_EMOJI + " **" + FORMATTER.format(randomNumber) + " FLOP**\nView your wallet using `/balance`");
@@ -30,6 +30,7 @@ public class StakeCommand extends Command {
         this.name = "stake";
         this.description = "Stake commands: new, list, end";
         this.category = Category.STAKING;
+        this.slow = true;
 
         // Define subcommands:
         this.subCommands.add(new SubcommandData("help", "Learn how to stake your coins."));
@@ -51,7 +52,7 @@ public class StakeCommand extends Command {
     public void execute(SlashCommandInteractionEvent event) {
         String subCommand = event.getSubcommandName();
         if (subCommand == null) {
-            event.reply("Please specify a subcommand: new, list, or end").queue();
+            event.getHook().sendMessage("Please specify a subcommand: new, list, or end").queue();
             return;
         }
         switch (subCommand) {
@@ -71,10 +72,10 @@ public class StakeCommand extends Command {
                 new StakeClaimCommand(bot).execute(event);
                 break;
             case "help":
-                event.replyEmbeds(stakeHelpEmbed).queue();
+                event.getHook().sendMessageEmbeds(stakeHelpEmbed).queue();
                 break;
             default:
-                event.replyEmbeds(stakeHelpEmbed).queue();
+                event.getHook().sendMessageEmbeds(stakeHelpEmbed).queue();
         }
     }
 }
@@ -22,8 +22,6 @@ public class StakeEndCommand extends Command {
 
     @Override
     public void execute(SlashCommandInteractionEvent event) {
-        event.deferReply().queue();
-
         long userId = Long.parseLong(event.getUser().getId());
         String txid = event.getOption("txid").getAsString();
 
@@ -41,7 +39,7 @@ public class StakeEndCommand extends Command {
         }
 
         // Delete stakes
-        bot.database.stakes.deleteOne(Filters.eq("_id", stake.getId()));
+        bot.database.removeStake(stake);
 
         event.getHook().sendMessageEmbeds(EmbedUtils.createSuccess("You have canceled your stake! You can now spent these funds!")).queue();
     }
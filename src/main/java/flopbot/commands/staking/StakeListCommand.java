@@ -10,19 +10,14 @@ import flopbot.util.embeds.EmbedUtils;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 
-import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 public class StakeListCommand extends Command {
 
     private static final DecimalFormat amountFormatter = new DecimalFormat("#,##0.##");
@@ -37,20 +32,11 @@ public class StakeListCommand extends Command {
 
     @Override
     public void execute(SlashCommandInteractionEvent event) {
-        event.deferReply().queue();
-
         long userId = Long.parseLong(event.getUser().getId());
-        List<Stake> userStakes = new ArrayList<>();
-        bot.database.stakes.find(Filters.eq("userId", userId)).into(userStakes);
 
+        // Spent stakes are removed by the stake watcher as blocks arrive, so every stored stake is active.
         List<Stake> activeStakes = new ArrayList<>();
-        for (Stake stake : userStakes) {
-            if (isUTXOSpent(stake.getTxid(), stake.getVout())) {
-                bot.database.stakes.deleteOne(Filters.eq("_id", stake.getId()));
-            } else {
-                activeStakes.add(stake);
-            }
-        }
+        bot.database.stakes.find(Filters.eq("userId", userId)).into(activeStakes);
 
         if (activeStakes.isEmpty()) {
             event.getHook().sendMessageEmbeds(EmbedUtils.createError("You have no active stakes at this time.")).queue();
@@ -76,44 +62,4 @@ public class StakeListCommand extends Command {
         }
         event.getHook().sendMessageEmbeds(eb.build()).queue();
     }
-
-    private boolean isUTXOSpent(String txid, int vout) {
-        try {
-            JSONObject result = sendRpcCommand("gettxout", txid, vout);
-            return result == null;
-        } catch (Exception e) {
-            return true;
-        }
-    }
-
-    private JSONObject sendRpcCommand(String method, Object... params) throws Exception {
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("jsonrpc", "1.0");
-        jsonRequest.put("id", "stakeListCommand");
-        jsonRequest.put("method", method);
-        JSONArray jsonParams = new JSONArray();
-        for (Object param : params) {
-            jsonParams.put(param);
-        }
-        jsonRequest.put("params", jsonParams);
-        String auth = FlopBot.RPC_USER + ":" + FlopBot.RPC_PASSWORD;
-        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-        java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
-        java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                .uri(java.net.URI.create(FlopBot.RPC_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Basic " + encodedAuth)
-                .POST(java.net.http.HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
-                .build();
-        java.net.http.HttpResponse<String> response = client.send(request, java.net.http.HttpResponse.BodyHandlers.ofString());
-        JSONObject jsonResponse = new JSONObject(response.body());
-        if (!jsonResponse.isNull("error") && !jsonResponse.get("error").toString().equals("null")) {
-            JSONObject errorObj = jsonResponse.getJSONObject("error");
-            throw new Exception(errorObj.optString("message", "Unknown RPC error"));
-        }
-        if (jsonResponse.isNull("result") || jsonResponse.get("result") == JSONObject.NULL) {
-            return null;
-        }
-        return jsonResponse.getJSONObject("result");
-    }
 }
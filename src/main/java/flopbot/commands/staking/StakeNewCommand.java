@@ -5,25 +5,21 @@ import flopbot.FlopBot;
 import flopbot.commands.Category;
 import flopbot.commands.Command;
 import flopbot.data.cache.Stake;
+import flopbot.data.json.TxOut;
 import flopbot.util.embeds.EmbedColor;
 import flopbot.util.embeds.EmbedUtils;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
 
 public class StakeNewCommand extends Command {
 
     private static final DecimalFormat amountFormatter = new DecimalFormat("#,##0.##");
+    private static final int MAX_VOUTS = 10;
 
     public StakeNewCommand(FlopBot bot) {
         super(bot);
@@ -35,8 +31,6 @@ public class StakeNewCommand extends Command {
 
     @Override
     public void execute(SlashCommandInteractionEvent event) {
-        event.deferReply().queue();
-
         String txid = event.getOption("txid").getAsString();
         double amount = event.getOption("amount").getAsDouble();
         long userId = Long.parseLong(event.getUser().getId());
@@ -48,37 +42,37 @@ public class StakeNewCommand extends Command {
             return;
         }
 
-        JSONObject utxoData;
+        // Look up vout indices 0 to 9 in a single batch request.
+        List<TxOut> outputs;
         try {
-            // Get UTXO details from the RPC for vout 0.
-            utxoData = sendRpcCommand("gettxout", txid, 0);
+            List<Object[]> outpoints = new ArrayList<>(MAX_VOUTS);
+            for (int i = 0; i < MAX_VOUTS; i++) {
+                outpoints.add(new Object[]{txid, i});
+            }
+            outputs = bot.rpc.getTxOuts(outpoints);
         } catch (Exception e) {
             event.getHook().sendMessageEmbeds(EmbedUtils.createError("Invalid TXID or UTXO is already spent.")).queue();
             return;
         }
 
+        // Get UTXO details for vout 0.
+        TxOut utxoData = outputs.get(0);
         if (utxoData == null) {
             event.getHook().sendMessageEmbeds(EmbedUtils.createError("Invalid UTXO or already spent.")).queue();
             return;
         }
 
-        int confirmations = utxoData.optInt("confirmations", 0);
+        int confirmations = utxoData.confirmations;
         if (confirmations > 10) {
             event.getHook().sendMessageEmbeds(EmbedUtils.createError("UTXO has more than 10 confirmations. Submission denied.")).queue();
             return;
         }
 
-        // Identify the correct vout by checking vout indices 0 to 9.
+        // Identify the correct vout by matching the output value.
         Integer vout = null;
-        for (int i = 0; i < 10; i++) {
-            JSONObject outputData;
-            try {
-                outputData = sendRpcCommand("gettxout", txid, i);
-            } catch (Exception e) {
-                e.printStackTrace();
-                continue;
-            }
-            if (outputData != null && Double.compare(outputData.optDouble("value", 0.0), amount) == 0) {
+        for (int i = 0; i < outputs.size(); i++) {
+            TxOut outputData = outputs.get(i);
+            if (outputData != null && Double.compare(outputData.value, amount) == 0) {
                 vout = i;
                 break;
             }
@@ -89,23 +83,23 @@ public class StakeNewCommand extends Command {
         }
 
         // Extract the reward address from the UTXO.
-        JSONObject scriptPubKey = utxoData.optJSONObject("scriptPubKey");
+        TxOut.ScriptPubKey scriptPubKey = utxoData.scriptPubKey;
         if (scriptPubKey == null) {
             event.getHook().sendMessageEmbeds(EmbedUtils.createError("No valid reward address found for this UTXO.")).queue();
             return;
         }
-        JSONArray addresses = scriptPubKey.optJSONArray("addresses");
+        List<String> addresses = scriptPubKey.addresses;
         if (addresses == null || addresses.isEmpty()) {
             event.getHook().sendMessageEmbeds(EmbedUtils.createError("No valid reward address found for this UTXO.")).queue();
             return;
         }
 
         // Create a new Stake instance.
-        String rewardWallet = addresses.getString(0);
+        String rewardWallet = addresses.get(0);
         Stake newStake = new Stake(userId, txid, vout, rewardWallet, amount);
 
         try {
-            bot.database.stakes.insertOne(newStake);
+            bot.database.addStake(newStake);
             MessageEmbed embed = new EmbedBuilder()
                     .setColor(EmbedColor.SUCCESS.color)
                     .setDescription("Your stake of " + FlopBot.COIN_EMOJI + " **" + amountFormatter.format(newStake.getAmount()) + " FLOP** was submitted successfully!\nYou can view all of your active stakes using the `/stake list` command!")
@@ -116,40 +110,4 @@ public class StakeNewCommand extends Command {
             event.getHook().sendMessageEmbeds(EmbedUtils.createError("An error occurred while processing your stake. Contact an admin!")).queue();
         }
     }
-
-    private JSONObject sendRpcCommand(String method, Object... params) throws Exception {
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("jsonrpc", "1.0");
-        jsonRequest.put("id", "stakeNewCommand");
-        jsonRequest.put("method", method);
-        JSONArray jsonParams = new JSONArray();
-        for (Object param : params) {
-            jsonParams.put(param);
-        }
-        jsonRequest.put("params", jsonParams);
-
-        String auth = FlopBot.RPC_USER + ":" + FlopBot.RPC_PASSWORD;
-        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(FlopBot.RPC_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Basic " + encodedAuth)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        JSONObject jsonResponse = new JSONObject(response.body());
-
-        // Check for an error in the response.
-        if (!jsonResponse.isNull("error") && !jsonResponse.get("error").toString().equals("null")) {
-            JSONObject errorObj = jsonResponse.getJSONObject("error");
-            throw new Exception(errorObj.optString("message", "Unknown RPC error"));
-        }
-
-        // Instead of getJSONObject, use optJSONObject so it quietly returns null.
-        return jsonResponse.optJSONObject("result");
-    }
-
 }
@@ -3,15 +3,12 @@ package flopbot.commands.staking;
 import flopbot.FlopBot;
 import flopbot.commands.Category;
 import flopbot.commands.Command;
-import flopbot.data.cache.Stake;
 import flopbot.util.embeds.EmbedColor;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.List;
 
 public class StakeStatsCommand extends Command {
 
@@ -26,16 +23,7 @@ public class StakeStatsCommand extends Command {
 
     @Override
     public void execute(SlashCommandInteractionEvent event) {
-        event.deferReply().queue();
-
-        // Query the stakes collection for all stakes.
-        List<Stake> stakes = new ArrayList<>();
-        bot.database.stakes.find().into(stakes);
-
-        double totalStaked = 0;
-        for (Stake stake : stakes) {
-            totalStaked += stake.getAmount();
-        }
+        double totalStaked = bot.database.getTotalStaked();
         double monthlyRewardPool = bot.getFaucetBalance() * 0.1;
         double dailyRewardPool = monthlyRewardPool / 30;
 
@@ -67,7 +67,7 @@ public class HelpCommand extends Command {
             // Send paginated help menu
             ReplyCallbackAction action = event.replyEmbeds(embeds.get(0));
             if (embeds.size() > 1) {
-                ButtonHandler.sendPaginatedMenu(event.getUser().getId(), action, embeds);
+                ButtonHandler.sendPaginatedMenu(event.getUser().getIdLong(), action, embeds);
                 return;
             }
             action.queue();
@@ -2,7 +2,7 @@ package flopbot.commands.wallet;
 
 import flopbot.FlopBot;
 import flopbot.commands.Category;
-import flopbot.commands.Command;
+import flopbot.commands.AsyncCommand;
 import flopbot.util.embeds.EmbedColor;
 import flopbot.util.embeds.EmbedUtils;
 import net.dv8tion.jda.api.EmbedBuilder;
@@ -10,7 +10,7 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 
-import java.io.IOException;
+import java.util.concurrent.CompletionStage;
 
 import static flopbot.util.NumberFormat.formatDouble;
 
@@ -19,7 +19,7 @@ import static flopbot.util.NumberFormat.formatDouble;
  *
  * @author TechnoVision
  */
-public class BalanceCommand extends Command {
+public class BalanceCommand extends AsyncCommand {
 
     public BalanceCommand(FlopBot bot) {
         super(bot);
@@ -29,29 +29,27 @@ public class BalanceCommand extends Command {
     }
 
     @Override
-    public void execute(SlashCommandInteractionEvent event) {
-        event.deferReply().queue();
-        try {
-            User user = event.getUser();
-            String name = user.getEffectiveName();
-
-            // Get wallet data from database and API (price is cached inside the wallet handler)
-            double balance = bot.walletHandler.getBalance(user.getIdLong());
-            String valueInDollars = formatDouble(bot.walletHandler.getValueInDollars(balance));
-            String formattedBalance = FlopBot.COIN_EMOJI + " **" + formatDouble(balance) + " FLOP** (≈ $" + valueInDollars + ")";
-
-            // Create embed with wallet info
-            MessageEmbed embed = new EmbedBuilder()
-                    .setTitle(name + "'s Wallet")
-                    .addField("Balance:", formattedBalance, true)
-                    .setThumbnail(user.getEffectiveAvatarUrl())
-                    .setColor(EmbedColor.DEFAULT.color)
-                    .build();
-            event.getHook().editOriginalEmbeds(embed).queue();
-
-        } catch (IOException e) {
-            event.getHook().editOriginalEmbeds(EmbedUtils.createError("An error occurred. Please try again!")).queue();
-        }
+    public CompletionStage<MessageEmbed> executeAsync(SlashCommandInteractionEvent event) {
+        User user = event.getUser();
+        String name = user.getEffectiveName();
+
+        // Get wallet data from the database and the latest price from the market data service
+        return bot.database.async(() -> bot.walletHandler.getBalance(user.getIdLong()))
+                .thenCombine(bot.market.get(), (balance, market) -> {
+                    String formattedBalance = FlopBot.COIN_EMOJI + " **" + formatDouble(balance) + " FLOP** (≈ $" + formatDouble(market.toUsd(balance)) + ")";
+
+                    // Create embed with wallet info
+                    return new EmbedBuilder()
+                            .setTitle(name + "'s Wallet")
+                            .addField("Balance:", formattedBalance, true)
+                            .setThumbnail(user.getEffectiveAvatarUrl())
+                            .setColor(EmbedColor.DEFAULT.color)
+                            .build();
+                });
     }
-}
 
+    @Override
+    protected MessageEmbed onError(Throwable error) {
+        return EmbedUtils.createError("An error occurred. Please try again!");
+    }
+}
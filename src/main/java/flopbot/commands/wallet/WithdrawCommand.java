@@ -2,7 +2,10 @@ package flopbot.commands.wallet;
 
 import flopbot.FlopBot;
 import flopbot.commands.Category;
-import flopbot.commands.Command;
+import flopbot.commands.AsyncCommand;
+import flopbot.data.cache.LedgerEntry;
+import flopbot.handlers.WalletHandler;
+import flopbot.rpc.RpcException;
 import flopbot.util.embeds.EmbedColor;
 import flopbot.util.embeds.EmbedUtils;
 import net.dv8tion.jda.api.EmbedBuilder;
@@ -10,21 +13,20 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import static flopbot.util.NumberFormat.FORMATTER;
 import static net.dv8tion.jda.api.interactions.commands.OptionType.INTEGER;
 import static net.dv8tion.jda.api.interactions.commands.OptionType.STRING;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.text.DecimalFormat;
-import java.util.Base64;
-import org.json.JSONObject;
-import org.json.JSONArray;
+public class WithdrawCommand extends AsyncCommand {
 
-public class WithdrawCommand extends Command {
+    private static final Logger LOGGER = Logger.getLogger(WithdrawCommand.class.getName());
 
     public WithdrawCommand(FlopBot bot) {
         super(bot);
@@ -38,150 +40,77 @@ public class WithdrawCommand extends Command {
     }
 
     @Override
-    public void execute(SlashCommandInteractionEvent event) {
-        // Defer the reply since the RPC call might take a moment.
-        event.deferReply().queue();
-
+    public CompletionStage<MessageEmbed> executeAsync(SlashCommandInteractionEvent event) {
         // Retrieve the command options.
         int amount = event.getOption("amount").getAsInt();
         String address = event.getOption("address").getAsString();
 
         // Basic validation on the amount.
         if (amount <= 0) {
-            event.getHook()
-                    .sendMessage("Amount must be greater than zero.")
-                    .setEphemeral(true)
-                    .queue();
-            return;
+            return CompletableFuture.completedFuture(EmbedUtils.createError("Amount must be greater than zero."));
         }
 
-        // Check if user has sufficient balance to withdraw
+        // Check the user's balance, the address, and the node's wallet balance all at once.
         long userID = event.getUser().getIdLong();
-        long userBalance = bot.walletHandler.getBalance(userID);
-        if (userBalance < amount) {
-            event.getHook()
-                    .sendMessageEmbeds(EmbedUtils.createError("You do not have enough funds to withdraw that amount."))
-                    .queue();
-            return;
-        }
+        CompletableFuture<Long> balance = bot.database.async(() -> bot.walletHandler.getBalance(userID));
+        CompletableFuture<Boolean> valid = bot.rpc.validateAddressAsync(address);
+        CompletableFuture<Double> faucet = bot.rpc.getBalanceAsync();
 
-        try {
-            // Validate the provided address using the node's validateaddress RPC command.
-            if (!isAddressValid(address)) {
-                event.getHook()
-                        .sendMessageEmbeds(EmbedUtils.createError("The wallet address you provided is not valid."))
-                        .queue();
-                return;
+        return CompletableFuture.allOf(balance, valid, faucet).thenCompose(ignored -> {
+            if (balance.join() < amount) {
+                return error("You do not have enough funds to withdraw that amount.");
             }
-
-            // Check the node's wallet balance using the getbalance RPC command.
-            double faucet = bot.getFaucetBalance();
-            if (amount > faucet) {
-                event.getHook()
-                        .sendMessageEmbeds(EmbedUtils.createError("The bot has insufficient funds. Please contact an admin!"))
-                        .queue();
-                return;
+            if (!valid.join()) {
+                return error("The wallet address you provided is not valid.");
+            }
+            if (amount > faucet.join()) {
+                return error("The bot has insufficient funds. Please contact an admin!");
             }
 
-            // Execute the RPC call to withdraw funds.
-            String txid = sendToAddressRPC(address, amount);
-
-            // Update balance in database
-            bot.walletHandler.setBalance(userID, userBalance - amount);
-
-            // Send success message
-            MessageEmbed embed = new EmbedBuilder()
-                    .setAuthor(event.getUser().getEffectiveName(), null, event.getUser().getEffectiveAvatarUrl())
-                    .setThumbnail("https://cdn-icons-png.flaticon.com/512/8815/8815105.png")
-                    .setDescription("You successfully withdrew " + FlopBot.COIN_EMOJI + " **" + FORMATTER.format(amount) + " FLOP**")
-                    .addField("Transaction ID", "[Click to View Transaction](https://explorer.flopcoin.net/ext/gettx/" + txid + ")", false)
-                    .addField("Destination Address", "`" + address + "`", false)
-                    .setColor(EmbedColor.DEFAULT.color)
-                    .build();
-            event.getHook().sendMessageEmbeds(embed).queue();
-        } catch (Exception e) {
-            event.getHook()
-                    .sendMessageEmbeds(EmbedUtils.createError("An error occurred while trying to withdraw. Please contact an admin!"))
-                    .queue();
-        }
+            // Debit the wallet atomically before sending, so concurrent bets or withdrawals can't overdraw it.
+            return bot.database.async(() -> bot.walletHandler.removeCoins(userID, amount, LedgerEntry.Reason.WITHDRAWAL))
+                    .thenCompose(remaining -> {
+                        if (remaining == WalletHandler.INSUFFICIENT_FUNDS) {
+                            return error("You do not have enough funds to withdraw that amount.");
+                        }
+
+                        // Execute the RPC call to withdraw funds, refunding the wallet only if the node rejected it.
+                        return bot.rpc.sendToAddressAsync(address, amount)
+                                .handle((txid, e) -> {
+                                    if (e == null) return CompletableFuture.completedFuture(txid);
+                                    Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                                    if (cause instanceof RpcException rpcError && rpcError.getCode() == 0) {
+                                        // The transaction may or may not have been sent, so keep the debit for an admin to check
+                                        LOGGER.log(Level.SEVERE, "Withdrawal of " + amount + " FLOP by user " + userID + " to " + address + " has an unknown outcome", cause);
+                                        return CompletableFuture.<String>completedFuture(null);
+                                    }
+                                    return bot.database.async(() -> bot.walletHandler.sendCoins(userID, amount, LedgerEntry.Reason.WITHDRAWAL_REFUND))
+                                            .<String>thenCompose(refunded -> CompletableFuture.failedFuture(e));
+                                })
+                                .thenCompose(Function.identity())
+                                .thenApply(txid -> {
+                                    if (txid == null) {
+                                        return EmbedUtils.createError("Your withdrawal could not be confirmed. An admin will check it and make sure you get your funds!");
+                                    }
+                                    return new EmbedBuilder()
+                                            .setAuthor(event.getUser().getEffectiveName(), null, event.getUser().getEffectiveAvatarUrl())
+                                            .setThumbnail("https://cdn-icons-png.flaticon.com/512/8815/8815105.png")
+                                            .setDescription("You successfully withdrew " + FlopBot.COIN_EMOJI + " **" + FORMATTER.format(amount) + " FLOP**")
+                                            .addField("Transaction ID", "[Click to View Transaction](https://explorer.flopcoin.net/ext/gettx/" + txid + ")", false)
+                                            .addField("Destination Address", "`" + address + "`", false)
+                                            .setColor(EmbedColor.DEFAULT.color)
+                                            .build();
+                                });
+                    });
+        });
     }
 
-    /**
-     * Validates the given address using the node's validateaddress RPC command.
-     *
-     * @param address The wallet address to validate.
-     * @return true if the address is valid; false otherwise.
-     * @throws Exception if the RPC call fails.
-     */
-    private boolean isAddressValid(String address) throws Exception {
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("jsonrpc", "1.0");
-        jsonRequest.put("id", "validateaddress");
-        jsonRequest.put("method", "validateaddress");
-        JSONArray params = new JSONArray();
-        params.put(address);
-        jsonRequest.put("params", params);
-
-        String auth = FlopBot.RPC_USER + ":" + FlopBot.RPC_PASSWORD;
-        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(FlopBot.RPC_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Basic " + encodedAuth)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        JSONObject jsonResponse = new JSONObject(response.body());
-
-        if (!jsonResponse.isNull("error") && !jsonResponse.get("error").toString().equals("null")) {
-            JSONObject errorObj = jsonResponse.getJSONObject("error");
-            throw new Exception("Address validation failed: " + errorObj.optString("message", "Unknown RPC error"));
-        }
-
-        JSONObject result = jsonResponse.getJSONObject("result");
-        return result.optBoolean("isvalid", false);
+    @Override
+    protected MessageEmbed onError(Throwable error) {
+        return EmbedUtils.createError("An error occurred while trying to withdraw. Please contact an admin!");
     }
 
-    /**
-     * Sends a JSON‑RPC request to the Flopcoin Core node to withdraw funds.
-     *
-     * @param address The destination wallet address.
-     * @param amount  The amount of FLOP to withdraw.
-     * @return The transaction ID returned by the node.
-     * @throws Exception if the RPC call fails or the node returns an error.
-     */
-    private String sendToAddressRPC(String address, int amount) throws Exception {
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("jsonrpc", "1.0");
-        jsonRequest.put("id", "withdraw");
-        jsonRequest.put("method", "sendtoaddress");
-        JSONArray params = new JSONArray();
-        params.put(address);
-        params.put(amount);
-        jsonRequest.put("params", params);
-
-        String auth = FlopBot.RPC_USER + ":" + FlopBot.RPC_PASSWORD;
-        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(FlopBot.RPC_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Basic " + encodedAuth)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        JSONObject jsonResponse = new JSONObject(response.body());
-
-        if (!jsonResponse.isNull("error") && !jsonResponse.get("error").toString().equals("null")) {
-            JSONObject errorObj = jsonResponse.getJSONObject("error");
-            throw new Exception(errorObj.optString("message", "Unknown RPC error"));
-        }
-
-        return jsonResponse.get("result").toString();
+    private static CompletableFuture<MessageEmbed> error(String message) {
+        return CompletableFuture.completedFuture(EmbedUtils.createError(message));
     }
 }
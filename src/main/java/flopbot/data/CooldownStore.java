@@ -0,0 +1,112 @@
+package flopbot.data;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import flopbot.data.cache.Cooldown;
+import flopbot.util.TaskScheduler;
+import flopbot.util.collections.LongLongHashMap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-user cooldowns for one command, kept in memory and persisted to the database.
+ * Expiry times live in a primitive map, so checking a cooldown never queries the database or boxes a key.
+ * Every change is also written to the database off the calling thread, and unexpired cooldowns are
+ * loaded back on startup so restarting the bot doesn't reset them. Expired entries are swept from
+ * memory and the database periodically.
+ */
+public class CooldownStore {
+
+    private static final Logger LOGGER = Logger.getLogger(CooldownStore.class.getName());
+
+    private static final long SWEEP_MINUTES = 10;
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final Database database;
+    private final String name;
+
+    /** Expiry time in millis for each user, guarded by this */
+    private final LongLongHashMap expiries = new LongLongHashMap();
+
+    /**
+     * Loads every unexpired cooldown for a command and starts sweeping expired ones.
+     *
+     * @param database the database to persist cooldowns to.
+     * @param name the name of the command, which keeps its cooldowns apart from other commands'.
+     * @param scheduler the scheduler to sweep on.
+     */
+    public CooldownStore(Database database, String name, TaskScheduler scheduler) {
+        this.database = database;
+        this.name = name;
+
+        long now = System.currentTimeMillis();
+        for (Cooldown cooldown : database.cooldowns.find(Filters.and(Filters.eq("name", name), Filters.gt("expires", now)))) {
+            expiries.put(cooldown.getUser(), cooldown.getExpires());
+        }
+        scheduler.scheduleAtFixedRate(this::sweep, SWEEP_MINUTES, SWEEP_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Starts a user's cooldown unless one is already running.
+     * Checking and starting is atomic, so a user can't pass the check twice with concurrent commands.
+     *
+     * @param userID the user's ID.
+     * @param duration how long the cooldown lasts in millis.
+     * @return 0 if the cooldown was started, otherwise the time in millis that the running cooldown ends.
+     */
+    public long tryAcquire(long userID, long duration) {
+        long now = System.currentTimeMillis();
+        long expires;
+        synchronized (this) {
+            long current = expiries.get(userID);
+            if (current != LongLongHashMap.MISSING && now < current) {
+                return current;
+            }
+            expires = now + duration;
+            expiries.put(userID, expires);
+        }
+        persist(userID, expires);
+        return 0;
+    }
+
+    /**
+     * @param userID the user's ID.
+     * @return the time in millis that the user's cooldown ends, or 0 if they aren't on cooldown.
+     */
+    public synchronized long getExpiry(long userID) {
+        long expires = expiries.get(userID);
+        return (expires != LongLongHashMap.MISSING && System.currentTimeMillis() < expires) ? expires : 0;
+    }
+
+    /**
+     * Saves a cooldown without blocking. Writes use $max, so if two land out of order the later expiry still wins.
+     */
+    private void persist(long userID, long expires) {
+        database.async(() -> database.cooldowns.updateOne(
+                Filters.and(Filters.eq("name", name), Filters.eq("user", userID)),
+                Updates.max("expires", expires),
+                UPSERT
+        )).exceptionally(e -> {
+            LOGGER.log(Level.WARNING, "Failed to save " + name + " cooldown for user " + userID, e);
+            return null;
+        });
+    }
+
+    /**
+     * Drops expired cooldowns from memory, then deletes them from the database.
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            expiries.removeValuesBelow(now);
+        }
+        database.cooldowns.deleteMany(Filters.and(Filters.eq("name", name), Filters.lt("expires", now)));
+    }
+
+    public synchronized int size() {
+        return expiries.size();
+    }
+}
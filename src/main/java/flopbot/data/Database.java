@@ -2,26 +2,37 @@ package flopbot.data;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.Indexes;
-import flopbot.FlopBot;
+import com.mongodb.client.model.*;
+import flopbot.data.cache.BalanceSnapshot;
+import flopbot.data.cache.Cooldown;
+import flopbot.data.cache.Counter;
+import flopbot.data.cache.LedgerCheckpoint;
+import flopbot.data.cache.LedgerEntry;
+import flopbot.data.cache.RewardEpoch;
 import flopbot.data.cache.Stake;
+import flopbot.data.cache.StakeReward;
 import flopbot.data.cache.Wallet;
+import flopbot.rpc.FlopcoinRpcClient;
+import flopbot.util.TaskScheduler;
+import org.bson.Document;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
 import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
@@ -34,14 +45,39 @@ public class Database {
     /** Collections */
     public @NotNull MongoCollection<Wallet> wallets;
     public @NotNull MongoCollection<Stake> stakes;
+    public @NotNull MongoCollection<LedgerEntry> ledger;
+    public @NotNull MongoCollection<BalanceSnapshot> balanceSnapshots;
+    public @NotNull MongoCollection<LedgerCheckpoint> ledgerCheckpoints;
+    public @NotNull MongoCollection<Counter> counters;
+    public @NotNull MongoCollection<RewardEpoch> rewardEpochs;
+    public @NotNull MongoCollection<StakeReward> stakeRewards;
+    public @NotNull MongoCollection<Cooldown> cooldowns;
+
+    private static final String TOTAL_STAKED = "totalStaked";
+    private static final FindOneAndUpdateOptions UPSERT_AND_RETURN = new FindOneAndUpdateOptions()
+            .upsert(true)
+            .returnDocument(ReturnDocument.AFTER);
+
+    private final @NotNull FlopcoinRpcClient rpc;
+
+    /** Latest value of the total staked counter, guarded by this */
+    private double totalStaked;
+
+    /** Every active stake keyed by its outpoint, so block spends can be matched without a query */
+    private final Map<String, Stake> trackedStakes = new ConcurrentHashMap<>();
+
+    /** Runs blocking queries for async callers, one virtual thread per query */
+    private final ExecutorService queries = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mongo-", 0).factory());
 
     /**
      * Connect to database using MongoDB URI and initialize any collections that don't exist.
-     * Additionally, check all stakes for spent/tampered UTXOs and remove them.
      *
      * @param uri MongoDB uri string.
+     * @param rpc client used to look up stake UTXOs on the node.
      */
-    public Database(String uri) {
+    public Database(String uri, FlopcoinRpcClient rpc) {
+        this.rpc = rpc;
+
         // Setup MongoDB database with URI.
         CodecRegistry pojoCodecRegistry = fromProviders(PojoCodecProvider.builder().automatic(true).build());
         CodecRegistry codecRegistry = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(), pojoCodecRegistry);
@@ -55,77 +91,161 @@ public class Database {
         // Initialize collections.
         wallets = database.getCollection("wallets", Wallet.class);
         stakes = database.getCollection("stakes", Stake.class);
+        ledger = database.getCollection("ledger", LedgerEntry.class);
+        balanceSnapshots = database.getCollection("ledger_snapshots", BalanceSnapshot.class);
+        ledgerCheckpoints = database.getCollection("ledger_checkpoints", LedgerCheckpoint.class);
+        counters = database.getCollection("counters", Counter.class);
+        rewardEpochs = database.getCollection("reward_epochs", RewardEpoch.class);
+        stakeRewards = database.getCollection("stake_rewards", StakeReward.class);
+        cooldowns = database.getCollection("cooldowns", Cooldown.class);
 
         // Add custom indexing.
         wallets.createIndex(Indexes.descending("user"));
         stakes.createIndex(Indexes.ascending("txid"));
+        ledger.createIndex(Indexes.ascending("user", "_id"));
+        balanceSnapshots.createIndex(Indexes.ascending("user"), new IndexOptions().unique(true));
+        stakeRewards.createIndex(Indexes.ascending("stakeId", "epoch"), new IndexOptions().unique(true));
+        stakeRewards.createIndex(Indexes.ascending("payoutBatch", "claimTime"));
+        cooldowns.createIndex(Indexes.ascending("name", "user"), new IndexOptions().unique(true));
+        cooldowns.createIndex(Indexes.ascending("expires"));
 
-        // Iterate through all stakes and remove any with spent or tampered UTXOs.
+        // Correct any drift in the running total left by a previous run
+        recomputeTotalStaked();
         for (Stake stake : stakes.find()) {
-            try {
-                if (isUTXOSpent(stake.getTxid(), stake.getVout())) {
-                    stakes.deleteOne(Filters.eq("_id", stake.getId()));
-                }
-            } catch (Exception ignored) { }
+            trackedStakes.put(outpoint(stake.getTxid(), stake.getVout()), stake);
         }
     }
 
     /**
-     * Checks if the UTXO for the given txid and vout is spent.
+     * Runs a query off the calling thread. The sync driver has no non-blocking API,
+     * so each query blocks a virtual thread instead of a command or JDA thread.
+     *
+     * @param query the query to run.
+     * @return a future that completes with the query's result.
+     */
+    public <T> CompletableFuture<T> async(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, queries);
+    }
+
+    /**
+     * Saves a new stake and adds it to the total staked.
+     *
+     * @param stake the stake to save.
+     */
+    public void addStake(Stake stake) {
+        stakes.insertOne(stake);
+        trackedStakes.put(outpoint(stake.getTxid(), stake.getVout()), stake);
+        adjustTotalStaked(stake.getAmount());
+    }
+
+    /**
+     * Deletes a stake and subtracts it from the total staked.
+     * The total is only changed if this call actually deleted the stake.
      *
-     * @param txid The transaction ID.
-     * @param vout The output index.
-     * @return true if the UTXO is spent (or if an error occurs), false otherwise.
+     * @param stake the stake to delete.
+     * @return true if the stake was deleted.
      */
-    private boolean isUTXOSpent(String txid, int vout) {
-        try {
-            JSONObject result = sendRpcCommand("gettxout", txid, vout);
-            return result == null;
-        } catch (Exception e) {
-            return true;
+    public boolean removeStake(Stake stake) {
+        trackedStakes.remove(outpoint(stake.getTxid(), stake.getVout()));
+        if (stakes.deleteOne(Filters.eq("_id", stake.getId())).getDeletedCount() == 0) {
+            return false;
         }
+        adjustTotalStaked(-stake.getAmount());
+        return true;
     }
 
     /**
-     * Sends an RPC command using the provided method and parameters.
+     * Deletes many stakes in one unordered bulk write and subtracts them from the total staked.
      *
-     * @param method The RPC method.
-     * @param params The RPC parameters.
-     * @return A JSONObject representing the "result" field of the RPC response.
-     * @throws Exception if an RPC error occurs.
+     * @param removed the stakes to delete.
+     * @return the number of stakes deleted.
      */
-    private JSONObject sendRpcCommand(String method, Object... params) throws Exception {
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("jsonrpc", "1.0");
-        jsonRequest.put("id", "databaseCheckStakes");
-        jsonRequest.put("method", method);
-        JSONArray jsonParams = new JSONArray();
-        for (Object param : params) {
-            jsonParams.put(param);
+    public int removeStakes(Collection<Stake> removed) {
+        if (removed.isEmpty()) return 0;
+        List<WriteModel<Stake>> deletes = new ArrayList<>(removed.size());
+        double amount = 0;
+        for (Stake stake : removed) {
+            trackedStakes.remove(outpoint(stake.getTxid(), stake.getVout()));
+            deletes.add(new DeleteOneModel<>(Filters.eq("_id", stake.getId())));
+            amount += stake.getAmount();
+        }
+        BulkWriteResult result = stakes.bulkWrite(deletes, new BulkWriteOptions().ordered(false));
+        if (result.getDeletedCount() == removed.size()) {
+            adjustTotalStaked(-amount);
+        } else {
+            // Some stakes were already gone, so we can't tell which amounts to subtract
+            recomputeTotalStaked();
         }
-        jsonRequest.put("params", jsonParams);
+        return result.getDeletedCount();
+    }
 
-        String auth = FlopBot.RPC_USER + ":" + FlopBot.RPC_PASSWORD;
-        String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Looks up the active stake locked in an outpoint, without querying the database.
+     *
+     * @param txid the transaction ID.
+     * @param vout the output index.
+     * @return the stake, or null if the outpoint isn't staked.
+     */
+    public Stake getTrackedStake(String txid, int vout) {
+        return trackedStakes.get(outpoint(txid, vout));
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(java.net.URI.create(FlopBot.RPC_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Basic " + encodedAuth)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
-                .build();
+    /**
+     * @return the number of active stakes.
+     */
+    public int getTrackedStakeCount() {
+        return trackedStakes.size();
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        JSONObject jsonResponse = new JSONObject(response.body());
+    private static String outpoint(String txid, int vout) {
+        return txid + ':' + vout;
+    }
 
-        if (!jsonResponse.isNull("error") && !jsonResponse.get("error").toString().equals("null")) {
-            JSONObject errorObj = jsonResponse.getJSONObject("error");
-            throw new Exception(errorObj.optString("message", "Unknown RPC error"));
-        }
-        if (jsonResponse.isNull("result") || jsonResponse.get("result") == JSONObject.NULL) {
-            return null;
-        }
-        return jsonResponse.getJSONObject("result");
+    /**
+     * @return the sum of all active stake amounts, without querying the database.
+     */
+    public synchronized double getTotalStaked() {
+        return totalStaked;
+    }
+
+    private synchronized void adjustTotalStaked(double amount) {
+        Counter counter = counters.findOneAndUpdate(
+                Filters.eq("_id", TOTAL_STAKED),
+                Updates.inc("value", amount),
+                UPSERT_AND_RETURN
+        );
+        totalStaked = counter.getValue();
+    }
+
+    /**
+     * Recalculates the total staked with a server-side $group and overwrites the running total.
+     */
+    public synchronized void recomputeTotalStaked() {
+        Document sum = stakes.aggregate(List.of(
+                Aggregates.group(null, Accumulators.sum("total", "$amount"))
+        ), Document.class).first();
+        double total = (sum != null) ? ((Number) sum.get("total")).doubleValue() : 0;
+        counters.replaceOne(Filters.eq("_id", TOTAL_STAKED), new Counter(TOTAL_STAKED, total), new ReplaceOptions().upsert(true));
+        totalStaked = total;
+    }
+
+    /**
+     * Starts a background job that checks all stakes for spent/tampered UTXOs and removes them.
+     *
+     * @param parallelism maximum number of UTXO batch requests in flight at once.
+     */
+    public void validateStakes(int parallelism) {
+        new StakeValidationJob(this, rpc, parallelism).start();
+    }
+
+    /**
+     * Starts a background watcher that removes stakes as new blocks spend their UTXOs.
+     *
+     * @param parallelism maximum number of UTXO batch requests in flight if all stakes need rechecking.
+     * @param pollSeconds how often to check the node for a new block.
+     * @param scheduler the scheduler to poll on.
+     */
+    public void watchStakes(int parallelism, int pollSeconds, TaskScheduler scheduler) {
+        new StakeWatcher(this, rpc, parallelism, scheduler).start(pollSeconds);
     }
 }
@@ -0,0 +1,206 @@
+package flopbot.data;
+
+import flopbot.data.json.BlockchainInfo;
+import flopbot.data.json.NetworkInfo;
+import flopbot.market.MarketDataService;
+import flopbot.market.MarketSnapshot;
+import flopbot.rpc.FlopcoinRpcClient;
+import flopbot.util.HttpFutures;
+import flopbot.util.TaskScheduler;
+import flopbot.util.embeds.EmbedColor;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import okhttp3.OkHttpClient;
+import org.json.JSONObject;
+
+import java.text.NumberFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls Flopcoin network statistics and keeps the /network embed ready in memory.
+ * Chain height, difficulty, peers, and hashrate come straight from the node, and the coin supply
+ * comes from the market data service. If the node can't be reached, the block explorer's summary
+ * is used instead. The embed is rebuilt once per refresh, so commands never wait on either source.
+ */
+public class ExplorerSummaryCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ExplorerSummaryCache.class.getName());
+
+    private static final String SUMMARY_URL = "https://explorer.flopcoin.net/ext/getsummary";
+
+    private final FlopcoinRpcClient rpc;
+    private final OkHttpClient client;
+    private final MarketDataService market;
+
+    /** Latest network embed, or null until the first refresh succeeds */
+    private volatile MessageEmbed embed;
+
+    /** Refresh in progress, shared by every caller that asks for one while it runs */
+    private final AtomicReference<CompletableFuture<MessageEmbed>> inflight = new AtomicReference<>();
+
+    /**
+     * Starts refreshing network statistics in the background.
+     *
+     * @param rpc the client for the Flopcoin node.
+     * @param client the HTTP client for the block explorer.
+     * @param market the source of the coin supply.
+     * @param scheduler the scheduler to refresh on.
+     * @param refreshSeconds how often statistics are refreshed.
+     */
+    public ExplorerSummaryCache(FlopcoinRpcClient rpc, OkHttpClient client, MarketDataService market,
+                                TaskScheduler scheduler, long refreshSeconds) {
+        this.rpc = rpc;
+        this.client = client;
+        this.market = market;
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the latest network embed, or null if none has been built yet. Never blocks.
+     */
+    public MessageEmbed getEmbed() {
+        return embed;
+    }
+
+    /**
+     * Rebuilds the network embed from fresh statistics, or joins the refresh that is already running.
+     * If both the node and the explorer fail, the future completes with the previous embed when there is one.
+     *
+     * @return a future that completes with the newest available network embed.
+     */
+    public CompletableFuture<MessageEmbed> refresh() {
+        CompletableFuture<MessageEmbed> future = new CompletableFuture<>();
+        CompletableFuture<MessageEmbed> running = inflight.compareAndExchange(null, future);
+        if (running != null) {
+            return running;
+        }
+
+        fromNode().exceptionallyCompose(error -> {
+            LOGGER.log(Level.FINE, "Failed to read network stats from the node, using the explorer", error);
+            return fromExplorer();
+        }).whenComplete((fresh, error) -> {
+            if (error == null) {
+                embed = fresh;
+                inflight.set(null);
+                future.complete(fresh);
+                return;
+            }
+            inflight.set(null);
+            MessageEmbed stale = embed;
+            LOGGER.log(Level.WARNING, "Failed to refresh network stats" + (stale != null ? ", serving stale data" : ""), error);
+            if (stale != null) {
+                future.complete(stale);
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<MessageEmbed> fromNode() {
+        CompletableFuture<BlockchainInfo> chain = rpc.getBlockchainInfoAsync();
+        CompletableFuture<NetworkInfo> network = rpc.getNetworkInfoAsync();
+        CompletableFuture<Double> hashps = rpc.getNetworkHashPsAsync();
+        CompletableFuture<Double> supply = market.get().thenApply(MarketSnapshot::getSupply);
+
+        return CompletableFuture.allOf(chain, network, hashps).thenCombine(supply, (ignored, coins) -> buildEmbed(
+                chain.join().difficulty,
+                hashps.join() / 1_000_000_000.0,
+                chain.join().blocks,
+                network.join().connections,
+                coins
+        ));
+    }
+
+    private CompletableFuture<MessageEmbed> fromExplorer() {
+        return HttpFutures.get(client, SUMMARY_URL).thenApply(body -> {
+            JSONObject json = new JSONObject(body.trim());
+
+            // The "hashrate" is provided as a string in GH/s, so parse it as a double.
+            double hashrate = 0.0;
+            try {
+                hashrate = Double.parseDouble(json.getString("hashrate"));
+            } catch (Exception ex) {
+                // If parsing fails, hashrate remains 0.0
+            }
+            return buildEmbed(
+                    json.optDouble("difficulty", 0.0),
+                    hashrate,
+                    json.optInt("blockcount", 0),
+                    json.optInt("connections", 0),
+                    json.optDouble("supply", 0.0)
+            );
+        });
+    }
+
+    /**
+     * Formats network statistics into the /network embed.
+     *
+     * @param hashrate the network hashrate in GH/s.
+     */
+    private static MessageEmbed buildEmbed(double difficulty, double hashrate, int blockHeight, int connections, double supply) {
+        // Calculate Block Reward:
+        // Initial block reward: 500,000 FLOP, halving every 100,000 blocks until a floor of 10,000 FLOP.
+        int halvingPeriods = blockHeight / 100000;
+        double blockReward = 500000.0 / Math.pow(2, halvingPeriods);
+        if (blockReward < 10000) {
+            blockReward = 10000;
+        }
+
+        // Format Difficulty: 3 decimals, comma-separated (e.g., "11,231.311")
+        NumberFormat decimalFormatter = NumberFormat.getNumberInstance();
+        decimalFormatter.setMinimumFractionDigits(3);
+        decimalFormatter.setMaximumFractionDigits(3);
+        String formattedDifficulty = decimalFormatter.format(difficulty);
+
+        // Format Hashrate: 3 decimals and append " GH/s"
+        String formattedHashrate = decimalFormatter.format(hashrate) + " GH/s";
+
+        // Format Block Height as an integer with commas (e.g., "59,574")
+        String formattedBlockHeight = NumberFormat.getIntegerInstance().format(blockHeight);
+
+        // Format Block Reward as an integer with commas (e.g., "500,000")
+        String formattedBlockReward = NumberFormat.getIntegerInstance().format((int) Math.round(blockReward));
+
+        // Format Connections as an integer (e.g., "42")
+        String formattedConnections = NumberFormat.getIntegerInstance().format(connections);
+
+        // Format Total Supply using abbreviated notation (e.g., "21.31B")
+        String formattedSupply = formatAbbreviated(supply);
+
+        return new EmbedBuilder()
+                .setColor(EmbedColor.DEFAULT.color)
+                .setTitle("Flopcoin Network")
+                .setThumbnail("https://i.imgur.com/Y2ttbtX.png")
+                .addField("Difficulty", formattedDifficulty, true)
+                .addField("Hashrate", formattedHashrate, true)
+                .addField("Block Height", formattedBlockHeight, true)
+                .addField("Block Reward", formattedBlockReward, true)
+                .addField("Peers", formattedConnections, true)
+                .addField("Coin Supply", formattedSupply, true)
+                .build();
+    }
+
+    /**
+     * Formats a number to an abbreviated string.
+     * For example, 21310000000 -> "21.31B"
+     *
+     * @param value the number to format
+     * @return the abbreviated string
+     */
+    private static String formatAbbreviated(double value) {
+        if (value >= 1_000_000_000_000L) {
+            return String.format("%.2fT", value / 1_000_000_000_000.0);
+        } else if (value >= 1_000_000_000) {
+            return String.format("%.2fB", value / 1_000_000_000.0);
+        } else if (value >= 1_000_000) {
+            return String.format("%.2fM", value / 1_000_000.0);
+        } else {
+            return NumberFormat.getNumberInstance().format(value);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package flopbot.data;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.*;
+import flopbot.data.cache.BalanceSnapshot;
+import flopbot.data.cache.LedgerCheckpoint;
+import flopbot.data.cache.LedgerEntry;
+import flopbot.data.cache.Wallet;
+import flopbot.util.TaskScheduler;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongUnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only record of every wallet balance change.
+ * Entries are buffered in memory and inserted with {@code insertMany} in batches. A periodic
+ * compaction job folds entries into per-user balance snapshots, and reconciles the wallets that
+ * changed since the last compaction against their snapshot, so the full ledger never has to be replayed.
+ */
+public class Ledger implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(Ledger.class.getName());
+
+    private static final String CHECKPOINT_ID = "compaction";
+
+    /** Entries newer than this are left for the next compaction, so late inserts are never skipped */
+    private static final long SETTLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int DUPLICATE_KEY = 11000;
+    private static final InsertManyOptions UNORDERED_INSERT = new InsertManyOptions().ordered(false);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final Database database;
+    private final LongUnaryOperator balances;
+    private final int batchSize;
+    private final TaskScheduler scheduler;
+    private final TaskScheduler.Task flushTask;
+    private final TaskScheduler.Task compactionTask;
+
+    private final ConcurrentLinkedQueue<LedgerEntry> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    /** Batch whose insert failed, retried before newer entries. Guarded by this */
+    private List<LedgerEntry> failedBatch;
+
+    /**
+     * Creates the first snapshot if needed and starts the flush and compaction jobs.
+     *
+     * @param database the database containing the ledger collections.
+     * @param balances looks up a user's current wallet balance for reconciliation.
+     * @param flushIntervalMs how often buffered entries are inserted.
+     * @param batchSize how many buffered entries trigger an early insert.
+     * @param compactionMinutes how often the ledger is compacted into snapshots.
+     * @param scheduler the scheduler to run flushes and compactions on.
+     */
+    public Ledger(Database database, LongUnaryOperator balances, long flushIntervalMs, int batchSize, long compactionMinutes, TaskScheduler scheduler) {
+        this.database = database;
+        this.balances = balances;
+        this.batchSize = Math.max(1, batchSize);
+        bootstrap();
+
+        this.scheduler = scheduler;
+        this.flushTask = scheduler.scheduleWithFixedDelay(() -> run(this::flush, "flush ledger"),
+                flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        this.compactionTask = scheduler.scheduleWithFixedDelay(() -> run(this::compact, "compact ledger"),
+                compactionMinutes, compactionMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Records a balance change. The entry is inserted with the next batch.
+     *
+     * @param userID the ID of the user.
+     * @param delta the change in balance.
+     * @param balance the balance after the change.
+     * @param reason why the balance changed.
+     */
+    public void record(long userID, long delta, long balance, LedgerEntry.Reason reason) {
+        buffer.add(new LedgerEntry(userID, delta, balance, reason));
+        if (buffered.incrementAndGet() == batchSize) {
+            scheduler.execute(() -> run(this::flush, "flush ledger"));
+        }
+    }
+
+    /**
+     * Inserts all buffered entries. A batch that fails is kept and retried first on the next flush;
+     * entries that made it in before the failure are skipped as duplicates on retry.
+     */
+    public synchronized void flush() {
+        if (failedBatch == null) {
+            List<LedgerEntry> batch = new ArrayList<>(buffered.get());
+            LedgerEntry entry;
+            while ((entry = buffer.poll()) != null) {
+                batch.add(entry);
+                buffered.decrementAndGet();
+            }
+            if (batch.isEmpty()) return;
+            failedBatch = batch;
+        }
+        try {
+            database.ledger.insertMany(failedBatch, UNORDERED_INSERT);
+        } catch (MongoBulkWriteException e) {
+            if (!onlyDuplicates(e)) throw e;
+        }
+        failedBatch = null;
+    }
+
+    /**
+     * Folds settled ledger entries into balance snapshots and reconciles the wallets they touched.
+     * Each snapshot only accepts a compaction once, so rerunning after a failure can't double count.
+     */
+    public synchronized void compact() {
+        flush();
+        ObjectId from = checkpoint();
+        ObjectId to = boundary(System.currentTimeMillis() - SETTLE_MILLIS);
+        if (to.compareTo(from) <= 0) return;
+
+        // Sum the settled entries for each user since the last compaction
+        Map<Long, Long> deltas = new HashMap<>();
+        database.ledger.aggregate(List.of(
+                Aggregates.match(Filters.and(Filters.gte("_id", from), Filters.lt("_id", to))),
+                Aggregates.group("$user", Accumulators.sum("delta", "$delta"))
+        ), Document.class).forEach(doc -> deltas.put(doc.getLong("_id"), ((Number) doc.get("delta")).longValue()));
+        if (!deltas.isEmpty()) {
+            reconcile(deltas, to);
+
+            List<WriteModel<BalanceSnapshot>> updates = new ArrayList<>(deltas.size());
+            long now = System.currentTimeMillis();
+            deltas.forEach((userID, delta) -> updates.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("user", userID), Filters.lt("through", to)),
+                    Updates.combine(Updates.inc("balance", delta), Updates.set("through", to), Updates.set("time", now)),
+                    UPSERT
+            )));
+            try {
+                database.balanceSnapshots.bulkWrite(updates, UNORDERED);
+            } catch (MongoBulkWriteException e) {
+                // A duplicate key means that snapshot already includes this compaction
+                if (!onlyDuplicates(e)) throw e;
+            }
+        }
+        database.ledgerCheckpoints.replaceOne(Filters.eq("_id", CHECKPOINT_ID),
+                new LedgerCheckpoint(CHECKPOINT_ID, to), new ReplaceOptions().upsert(true));
+        LOGGER.info("Compacted ledger entries for " + deltas.size() + " wallets");
+    }
+
+    /**
+     * Checks that each wallet's snapshot plus its new ledger entries matches its current balance.
+     * Wallets with entries newer than the compaction window are skipped since they are still changing.
+     */
+    private void reconcile(Map<Long, Long> deltas, ObjectId to) {
+        Set<Long> active = new HashSet<>();
+        database.ledger.distinct("user", Filters.gte("_id", to), Long.class).forEach(active::add);
+
+        Map<Long, BalanceSnapshot> snapshots = new HashMap<>();
+        database.balanceSnapshots.find(Filters.in("user", deltas.keySet()))
+                .forEach(snapshot -> snapshots.put(snapshot.getUser(), snapshot));
+
+        int checked = 0;
+        int mismatched = 0;
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            long userID = entry.getKey();
+            if (active.contains(userID)) continue;
+            BalanceSnapshot snapshot = snapshots.get(userID);
+            long expected = (snapshot == null) ? entry.getValue()
+                    : (snapshot.getThrough().compareTo(to) >= 0) ? snapshot.getBalance()
+                    : snapshot.getBalance() + entry.getValue();
+            long actual = balances.applyAsLong(userID);
+            checked++;
+            if (expected != actual) {
+                mismatched++;
+                LOGGER.warning("Wallet " + userID + " has balance " + actual + " but the ledger expects " + expected);
+            }
+        }
+        LOGGER.info("Reconciled " + checked + " wallets against the ledger, " + mismatched + " mismatched");
+    }
+
+    /**
+     * Seeds snapshots from the current wallet balances the first time the ledger is used,
+     * so wallets created before the ledger existed reconcile correctly.
+     */
+    private void bootstrap() {
+        if (database.ledgerCheckpoints.find(Filters.eq("_id", CHECKPOINT_ID)).first() != null) return;
+
+        ObjectId through = boundary(System.currentTimeMillis());
+        List<WriteModel<BalanceSnapshot>> snapshots = new ArrayList<>();
+        for (Wallet wallet : database.wallets.find()) {
+            snapshots.add(new ReplaceOneModel<>(
+                    Filters.eq("user", wallet.getUser()),
+                    new BalanceSnapshot(wallet.getUser(), wallet.getBalance(), through),
+                    new ReplaceOptions().upsert(true)
+            ));
+        }
+        if (!snapshots.isEmpty()) {
+            database.balanceSnapshots.bulkWrite(snapshots, UNORDERED);
+        }
+        database.ledgerCheckpoints.replaceOne(Filters.eq("_id", CHECKPOINT_ID),
+                new LedgerCheckpoint(CHECKPOINT_ID, through), new ReplaceOptions().upsert(true));
+        LOGGER.info("Created ledger snapshots for " + snapshots.size() + " existing wallets");
+    }
+
+    private ObjectId checkpoint() {
+        LedgerCheckpoint checkpoint = database.ledgerCheckpoints.find(Filters.eq("_id", CHECKPOINT_ID)).first();
+        return (checkpoint != null) ? checkpoint.getThrough() : boundary(0);
+    }
+
+    /**
+     * @return the smallest possible ObjectId for the second containing this time.
+     */
+    private static ObjectId boundary(long millis) {
+        return new ObjectId(String.format("%08x0000000000000000", millis / 1000));
+    }
+
+    private static boolean onlyDuplicates(MongoBulkWriteException e) {
+        for (BulkWriteError error : e.getWriteErrors()) {
+            if (error.getCode() != DUPLICATE_KEY) return false;
+        }
+        return e.getWriteConcernError() == null;
+    }
+
+    private static void run(Runnable task, String name) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to " + name + ", will retry", e);
+        }
+    }
+
+    /**
+     * Stops the background jobs and inserts any buffered entries.
+     */
+    @Override
+    public void close() {
+        flushTask.cancel();
+        compactionTask.cancel();
+        run(this::flush, "flush ledger on shutdown");
+        run(this::flush, "flush ledger on shutdown");
+    }
+}
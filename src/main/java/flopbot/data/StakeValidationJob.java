@@ -0,0 +1,119 @@
+package flopbot.data;
+
+import flopbot.data.cache.Stake;
+import flopbot.data.json.TxOut;
+import flopbot.rpc.FlopcoinRpcClient;
+import flopbot.rpc.RpcException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background job that checks every stake for spent or tampered UTXOs and removes them.
+ * Stakes are looked up in batches on a bounded pool of virtual threads, and all
+ * deletes are sent to the database as a single bulk write once the scan is done.
+ */
+public class StakeValidationJob implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(StakeValidationJob.class.getName());
+
+    /** Number of stakes checked per gettxout batch request */
+    private static final int BATCH_SIZE = 100;
+
+    private final Database database;
+    private final FlopcoinRpcClient rpc;
+    private final int parallelism;
+
+    private final AtomicInteger checked = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Stake> spent = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param database the database containing the stakes collection.
+     * @param rpc client used to look up stake UTXOs.
+     * @param parallelism maximum number of batch requests in flight at once.
+     */
+    public StakeValidationJob(Database database, FlopcoinRpcClient rpc, int parallelism) {
+        this.database = database;
+        this.rpc = rpc;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Runs the job on a background virtual thread.
+     */
+    public void start() {
+        Thread.ofVirtual().name("stake-validation").start(this);
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        long total = database.stakes.countDocuments();
+        LOGGER.info("Validating " + total + " stakes with parallelism " + parallelism);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("stake-validation-", 0).factory());
+        try {
+            // Split stakes into batches and check each batch concurrently
+            List<Future<?>> futures = new ArrayList<>();
+            List<Stake> batch = new ArrayList<>(BATCH_SIZE);
+            for (Stake stake : database.stakes.find()) {
+                batch.add(stake);
+                if (batch.size() == BATCH_SIZE) {
+                    List<Stake> current = batch;
+                    futures.add(executor.submit(() -> checkBatch(current, total)));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<Stake> current = batch;
+                futures.add(executor.submit(() -> checkBatch(current, total)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            // Remove all spent stakes in one round trip
+            int removed = database.removeStakes(spent);
+
+            long duration = System.currentTimeMillis() - start;
+            LOGGER.info("Stake validation finished in " + duration + "ms: " + checked.get() + " processed, "
+                    + removed + " removed, " + failed.get() + " skipped due to RPC errors");
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Stake validation failed", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Checks a batch of stakes and queues any with spent UTXOs for removal.
+     * Stakes are kept if the node can't be reached, so an outage never wipes out stakes.
+     */
+    private void checkBatch(List<Stake> batch, long total) {
+        List<Object[]> outpoints = new ArrayList<>(batch.size());
+        for (Stake stake : batch) {
+            outpoints.add(new Object[]{stake.getTxid(), stake.getVout()});
+        }
+        try {
+            List<TxOut> outputs = rpc.getTxOuts(outpoints);
+            for (int i = 0; i < batch.size(); i++) {
+                if (outputs.get(i) == null) {
+                    spent.add(batch.get(i));
+                }
+            }
+        } catch (RpcException e) {
+            failed.addAndGet(batch.size());
+            LOGGER.log(Level.WARNING, "Failed to check a batch of stakes", e);
+        }
+        // Report progress every time another 10% of stakes has been checked
+        int done = checked.addAndGet(batch.size());
+        if (total > 0 && (done * 10 / total) > ((done - batch.size()) * 10 / total)) {
+            LOGGER.info("Stake validation progress: " + done + "/" + total);
+        }
+    }
+}
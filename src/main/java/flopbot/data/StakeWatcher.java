@@ -0,0 +1,164 @@
+package flopbot.data;
+
+import flopbot.data.cache.Stake;
+import flopbot.data.json.Block;
+import flopbot.data.json.RawTransaction;
+import flopbot.rpc.FlopcoinRpcClient;
+import flopbot.rpc.RpcException;
+import flopbot.util.TaskScheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background watcher that removes stakes as soon as a block spends their UTXO.
+ * Polls the node for a new best block, reads the inputs of every transaction in each new block,
+ * and intersects them with the in-memory set of staked outpoints. Commands can then trust that
+ * every stake in the database is unspent without asking the node themselves.
+ *
+ * <p>If the chain reorganizes or the bot falls too far behind, the watcher falls back to
+ * checking every stake directly with {@link StakeValidationJob}. Reading block transactions needs the
+ * node to run with -txindex; without it, every stake is checked directly on each new block instead.</p>
+ */
+public class StakeWatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(StakeWatcher.class.getName());
+
+    /** Most blocks to walk back through before falling back to a full check */
+    private static final int MAX_CATCH_UP = 50;
+
+    /** Number of transactions looked up per getrawtransaction batch request */
+    private static final int TX_BATCH_SIZE = 500;
+
+    private final Database database;
+    private final FlopcoinRpcClient rpc;
+    private final int parallelism;
+    private final TaskScheduler scheduler;
+
+    /** Whether the node can look up any transaction, cleared once a lookup shows it can't */
+    private volatile boolean txIndex = true;
+
+    /** Last block whose spends were processed, only touched by one poll at a time */
+    private String lastHash;
+    private int lastHeight;
+
+    /**
+     * @param database the database containing the stakes collection.
+     * @param rpc client used to read blocks from the node.
+     * @param parallelism maximum number of batch requests in flight during a full check.
+     * @param scheduler the scheduler to poll on.
+     */
+    public StakeWatcher(Database database, FlopcoinRpcClient rpc, int parallelism, TaskScheduler scheduler) {
+        this.database = database;
+        this.rpc = rpc;
+        this.parallelism = parallelism;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts polling the node for new blocks.
+     *
+     * @param pollSeconds how often to check for a new best block.
+     */
+    public void start(long pollSeconds) {
+        try {
+            // Older nodes can't report their indexes, so a missing txindex is only found by the first lookup
+            if (Boolean.FALSE.equals(rpc.hasTxIndex())) {
+                disableTxIndex();
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to check the node for -txindex", e);
+        }
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    private void poll() {
+        try {
+            String best = rpc.getBestBlockHash();
+            if (best == null || best.equals(lastHash)) return;
+            Block tip = rpc.getBlock(best);
+            if (lastHash == null) {
+                // Spends from before startup are handled by the startup validation job
+                lastHash = tip.hash;
+                lastHeight = tip.height;
+                return;
+            }
+
+            // Walk back from the new tip to the last block we processed
+            Deque<Block> blocks = new ArrayDeque<>();
+            Block block = tip;
+            while (block.height > lastHeight && blocks.size() < MAX_CATCH_UP) {
+                blocks.push(block);
+                if (block.height == lastHeight + 1 || block.previousblockhash == null) break;
+                block = rpc.getBlock(block.previousblockhash);
+            }
+
+            if (blocks.isEmpty() || !lastHash.equals(blocks.peek().previousblockhash)) {
+                LOGGER.info("Chain changed from block " + lastHeight + " to " + tip.height + " without a direct path, checking all stakes");
+                new StakeValidationJob(database, rpc, parallelism).run();
+            } else if (database.getTrackedStakeCount() > 0 && (!txIndex || !removeSpent(blocks))) {
+                new StakeValidationJob(database, rpc, parallelism).run();
+            }
+            lastHash = tip.hash;
+            lastHeight = tip.height;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to process new blocks, will retry", e);
+        }
+    }
+
+    /**
+     * Removes every stake spent in a run of blocks.
+     *
+     * @return false if the node has no transaction index, so the blocks couldn't be read.
+     */
+    private boolean removeSpent(Deque<Block> blocks) throws Exception {
+        try {
+            for (Block block : blocks) {
+                removeSpent(block);
+            }
+            return true;
+        } catch (RpcException e) {
+            // Every transaction in a connected block exists, so "not found" means the node can't look it up
+            if (e.getCode() != FlopcoinRpcClient.INVALID_ADDRESS_OR_KEY) throw e;
+            disableTxIndex();
+            return false;
+        }
+    }
+
+    private void disableTxIndex() {
+        txIndex = false;
+        LOGGER.warning("Flopcoin node is not running with txindex=1, so every stake will be checked on each new block instead. "
+                + "Enable txindex on the node to only read each block's spends.");
+    }
+
+    /**
+     * Removes every stake whose outpoint is spent by a transaction in the block.
+     */
+    private void removeSpent(Block block) throws Exception {
+        if (block.tx == null || database.getTrackedStakeCount() == 0) return;
+
+        List<Stake> spent = new ArrayList<>();
+        for (int i = 0; i < block.tx.size(); i += TX_BATCH_SIZE) {
+            List<String> txids = block.tx.subList(i, Math.min(i + TX_BATCH_SIZE, block.tx.size()));
+            for (RawTransaction tx : rpc.getRawTransactions(txids)) {
+                if (tx == null || tx.vin == null) continue;
+                for (RawTransaction.Vin input : tx.vin) {
+                    if (input.coinbase != null || input.txid == null) continue;
+                    Stake stake = database.getTrackedStake(input.txid, input.vout);
+                    if (stake != null) {
+                        spent.add(stake);
+                    }
+                }
+            }
+        }
+        if (!spent.isEmpty()) {
+            int removed = database.removeStakes(spent);
+            LOGGER.info("Removed " + removed + " stakes spent in block " + block.height);
+        }
+    }
+}
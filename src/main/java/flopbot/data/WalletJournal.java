@@ -0,0 +1,150 @@
+package flopbot.data;
+
+import flopbot.util.collections.LongObjectHashMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only local journal of wallet balance deltas that have not been written to the database yet.
+ * Each record is a fixed 16 bytes (user ID, delta), written straight to the file channel so it
+ * survives a crash of the bot. When a flush starts, the active journal is sealed into a batch
+ * file named after the flush, and the batch file is deleted once the database has applied it.
+ */
+public class WalletJournal implements AutoCloseable {
+
+    private static final String ACTIVE_FILE = "wallets.journal";
+    private static final String BATCH_PREFIX = "wallets-";
+    private static final String BATCH_SUFFIX = ".batch";
+    private static final int RECORD_SIZE = 16;
+
+    private final Path directory;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private FileChannel channel;
+
+    /**
+     * Opens the journal directory. Any existing journal files are left untouched
+     * so they can be recovered with {@link #sealRecovered(String)} and {@link #batches()}.
+     *
+     * @param directory the directory to keep journal files in.
+     * @throws IOException if the directory can't be created.
+     */
+    public WalletJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Appends a balance delta to the active journal. Not thread-safe; callers must synchronize appends.
+     *
+     * @param userID the ID of the user.
+     * @param delta the change in balance.
+     * @throws IOException if the record can't be written.
+     */
+    public void append(long userID, long delta) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(directory.resolve(ACTIVE_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        record.clear();
+        record.putLong(userID).putLong(delta).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /**
+     * Seals the active journal into a batch file so a new journal can be started.
+     *
+     * @param batchId the ID of the flush that will apply this batch.
+     * @return the sealed batch file, or null if nothing was journaled.
+     * @throws IOException if the journal can't be sealed.
+     */
+    public Path seal(String batchId) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+        return sealRecovered(batchId);
+    }
+
+    /**
+     * Seals a journal left behind by a previous run into a batch file.
+     *
+     * @param batchId the ID of the flush that will apply this batch.
+     * @return the sealed batch file, or null if there was no journal.
+     * @throws IOException if the journal can't be sealed.
+     */
+    public Path sealRecovered(String batchId) throws IOException {
+        Path active = directory.resolve(ACTIVE_FILE);
+        if (!Files.exists(active)) {
+            return null;
+        }
+        Path batch = directory.resolve(BATCH_PREFIX + batchId + BATCH_SUFFIX);
+        return Files.move(active, batch, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lists batch files that were sealed but never confirmed as applied, oldest first.
+     *
+     * @return a list of batch files.
+     * @throws IOException if the directory can't be read.
+     */
+    public List<Path> batches() throws IOException {
+        List<Path> batches = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(BATCH_PREFIX) && name.endsWith(BATCH_SUFFIX);
+            }).sorted().forEach(batches::add);
+        }
+        return batches;
+    }
+
+    /**
+     * @param batch a batch file.
+     * @return the ID of the flush that the batch belongs to.
+     */
+    public static String batchId(Path batch) {
+        String name = batch.getFileName().toString();
+        return name.substring(BATCH_PREFIX.length(), name.length() - BATCH_SUFFIX.length());
+    }
+
+    /**
+     * Reads a batch file and sums the deltas for each user.
+     * A partially written record at the end of the file is ignored.
+     *
+     * @param batch a batch file.
+     * @return a map of user IDs to their total change in balance.
+     * @throws IOException if the file can't be read.
+     */
+    public static LongObjectHashMap<long[]> read(Path batch) throws IOException {
+        LongObjectHashMap<long[]> deltas = new LongObjectHashMap<>();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(batch));
+        while (buffer.remaining() >= RECORD_SIZE) {
+            long userID = buffer.getLong();
+            long delta = buffer.getLong();
+            long[] total = deltas.get(userID);
+            if (total == null) {
+                deltas.put(userID, new long[]{delta});
+            } else {
+                total[0] += delta;
+            }
+        }
+        return deltas;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package flopbot.data;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import flopbot.data.cache.Wallet;
+import flopbot.data.cache.WalletCache;
+import flopbot.util.StripedLock;
+import flopbot.util.TaskScheduler;
+import flopbot.util.collections.LongObjectHashMap;
+import org.bson.conversions.Bson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional write-behind mode for wallet balances.
+ * Balance changes are applied in memory and journaled locally, then the summed delta for each
+ * user is written to the database as one unordered bulk write every few hundred milliseconds
+ * or operations. Journaled deltas that never reached the database are replayed on startup.
+ *
+ * <p>Each flush stamps the wallets it updates with its batch ID, so replaying a batch that was
+ * already partially applied before a crash only applies the missing updates.</p>
+ */
+public class WalletWriteBehind implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(WalletWriteBehind.class.getName());
+
+    /** Returned by {@link #apply(long, long, boolean)} when a debit is rejected */
+    public static final long REJECTED = Long.MIN_VALUE;
+
+    private static final FindOneAndUpdateOptions UPSERT_AND_RETURN = new FindOneAndUpdateOptions()
+            .upsert(true)
+            .returnDocument(ReturnDocument.AFTER);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    private final MongoCollection<Wallet> wallets;
+    private final WalletCache cache;
+    private final StripedLock locks;
+    private final LongObjectHashMap<Dirty>[] dirty;
+    private final WalletJournal journal;
+
+    // Appends hold the read lock; sealing the journal for a flush holds the write lock
+    private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final TaskScheduler scheduler;
+    private final TaskScheduler.Task flushTask;
+    private final int flushOps;
+    private final AtomicInteger opsSinceFlush = new AtomicInteger();
+    private final AtomicInteger batchCounter = new AtomicInteger();
+
+    /** Batch that was sealed but not yet confirmed as written, guarded by flushLock */
+    private Batch pendingBatch;
+
+    /**
+     * Replays any leftover journal and starts the periodic flusher.
+     *
+     * @param wallets the wallets collection.
+     * @param cache the wallet cache to refresh once deltas are flushed.
+     * @param locks the per-user locks shared with the wallet handler.
+     * @param directory the directory to keep the journal in.
+     * @param flushIntervalMs how often to flush pending deltas.
+     * @param flushOps how many operations trigger an early flush.
+     * @param scheduler the scheduler to run flushes on.
+     * @throws IOException if the journal can't be opened or replayed.
+     */
+    @SuppressWarnings("unchecked")
+    public WalletWriteBehind(MongoCollection<Wallet> wallets, WalletCache cache, StripedLock locks,
+                             Path directory, long flushIntervalMs, int flushOps, TaskScheduler scheduler) throws IOException {
+        this.wallets = wallets;
+        this.cache = cache;
+        this.locks = locks;
+        this.flushOps = Math.max(1, flushOps);
+        this.dirty = (LongObjectHashMap<Dirty>[]) new LongObjectHashMap<?>[locks.size()];
+        for (int i = 0; i < dirty.length; i++) {
+            dirty[i] = new LongObjectHashMap<>();
+        }
+        this.journal = new WalletJournal(directory);
+        recover();
+
+        this.scheduler = scheduler;
+        this.flushTask = scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applies a balance change in memory and journals it for the next flush.
+     *
+     * @param userID the ID of the user.
+     * @param delta the change in balance.
+     * @param guarded whether to reject the change if it would make the balance negative.
+     * @return the new balance, or {@link #REJECTED} if a guarded change was rejected.
+     */
+    public long apply(long userID, long delta, boolean guarded) {
+        return update(userID, delta, false, guarded);
+    }
+
+    /**
+     * Overwrites a balance in memory. It is journaled as the difference from the
+     * current balance, so it can share a batch with other deltas.
+     *
+     * @param userID the ID of the user.
+     * @param balance the new balance.
+     * @return the change from the previous balance.
+     */
+    public long set(long userID, long balance) {
+        return update(userID, balance, true, false);
+    }
+
+    private long update(long userID, long value, boolean absolute, boolean guarded) {
+        long balance;
+        long delta;
+        journalLock.readLock().lock();
+        try {
+            int stripe = locks.stripeOf(userID);
+            ReentrantLock lock = locks.get(stripe);
+            lock.lock();
+            try {
+                Dirty entry = dirtyEntry(stripe, userID);
+                delta = absolute ? value - entry.balance : value;
+                if (guarded && entry.balance + delta < 0) {
+                    return REJECTED;
+                }
+                synchronized (journal) {
+                    journal.append(userID, delta);
+                }
+                entry.balance += delta;
+                entry.pending += delta;
+                balance = entry.balance;
+                cache.put(userID, balance);
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal wallet update", e);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+
+        if (opsSinceFlush.incrementAndGet() == flushOps) {
+            scheduler.execute(this::flushQuietly);
+        }
+        return absolute ? delta : balance;
+    }
+
+    /**
+     * Gets the in-memory balance of a user with unflushed changes.
+     * The caller must hold the user's lock.
+     *
+     * @param userID the ID of the user.
+     * @return the balance including unflushed changes, or {@link WalletCache#MISSING} if there are none.
+     */
+    public long peek(long userID) {
+        int stripe = locks.stripeOf(userID);
+        Dirty entry = dirty[stripe].get(userID);
+        return (entry != null) ? entry.balance : WalletCache.MISSING;
+    }
+
+    /**
+     * Gets the in-memory entry for a user, loading their balance from the database on first use.
+     * The upsert also guarantees the wallet exists before any delta for it is flushed.
+     */
+    private Dirty dirtyEntry(int stripe, long userID) {
+        Dirty entry = dirty[stripe].get(userID);
+        if (entry == null) {
+            Wallet wallet = wallets.findOneAndUpdate(
+                    Filters.eq("user", userID),
+                    Updates.setOnInsert("balance", 0L),
+                    UPSERT_AND_RETURN
+            );
+            entry = new Dirty(wallet.getBalance());
+            dirty[stripe].put(userID, entry);
+        }
+        return entry;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to flush wallet updates, will retry", e);
+        }
+    }
+
+    /**
+     * Writes all pending deltas to the database as one unordered bulk write.
+     * If the previous batch failed, it is retried before any new deltas are sealed.
+     *
+     * @throws IOException if the journal can't be sealed or cleaned up.
+     */
+    public void flush() throws IOException {
+        flushLock.lock();
+        try {
+            if (pendingBatch == null) {
+                pendingBatch = seal();
+                if (pendingBatch == null) return;
+            }
+            write(pendingBatch.id, pendingBatch.users, pendingBatch.deltas);
+            Files.deleteIfExists(pendingBatch.file);
+            release(pendingBatch);
+            pendingBatch = null;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Seals the journal and moves every user's pending delta into the new batch.
+     */
+    private Batch seal() throws IOException {
+        opsSinceFlush.set(0);
+        String batchId = nextBatchId();
+        journalLock.writeLock().lock();
+        try {
+            Path file = journal.seal(batchId);
+            if (file == null) return null;
+
+            LongList users = new LongList();
+            LongList deltas = new LongList();
+            LongList settled = new LongList();
+            for (int stripe = 0; stripe < dirty.length; stripe++) {
+                ReentrantLock lock = locks.get(stripe);
+                lock.lock();
+                try {
+                    dirty[stripe].forEach((userID, entry) -> {
+                        if (entry.pending != 0) {
+                            users.add(userID);
+                            deltas.add(entry.pending);
+                            entry.inflight += entry.pending;
+                            entry.pending = 0;
+                        } else if (entry.inflight == 0) {
+                            settled.add(userID);
+                        }
+                    });
+                    // Changes that cancelled out never need to reach the database
+                    for (int i = 0; i < settled.size; i++) {
+                        Dirty entry = dirty[stripe].remove(settled.values[i]);
+                        cache.put(settled.values[i], entry.balance);
+                    }
+                    settled.size = 0;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return new Batch(batchId, file, users.toArray(), deltas.toArray());
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a written batch as settled and hands final balances to the cache.
+     */
+    private void release(Batch batch) {
+        for (int i = 0; i < batch.users.length; i++) {
+            long userID = batch.users[i];
+            int stripe = locks.stripeOf(userID);
+            ReentrantLock lock = locks.get(stripe);
+            lock.lock();
+            try {
+                Dirty entry = dirty[stripe].get(userID);
+                entry.inflight -= batch.deltas[i];
+                if (entry.pending == 0 && entry.inflight == 0) {
+                    dirty[stripe].remove(userID);
+                    cache.put(userID, entry.balance);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sends one batch of deltas as an unordered bulk write. Wallets already stamped with
+     * this batch ID are skipped, which makes replaying a batch safe.
+     */
+    private void write(String batchId, long[] users, long[] deltas) {
+        List<WriteModel<Wallet>> updates = new ArrayList<>(users.length);
+        for (int i = 0; i < users.length; i++) {
+            if (deltas[i] == 0) continue;
+            Bson filter = Filters.and(Filters.eq("user", users[i]), Filters.ne("lastFlush", batchId));
+            Bson update = Updates.combine(Updates.inc("balance", deltas[i]), Updates.set("lastFlush", batchId));
+            updates.add(new UpdateOneModel<>(filter, update));
+        }
+        if (!updates.isEmpty()) {
+            wallets.bulkWrite(updates, UNORDERED);
+        }
+    }
+
+    /**
+     * Replays batches and the journal left behind by a previous run.
+     */
+    private void recover() throws IOException {
+        List<Path> batches = new ArrayList<>(journal.batches());
+        Path leftover = journal.sealRecovered(nextBatchId());
+        if (leftover != null) {
+            batches.add(leftover);
+        }
+        for (Path batch : batches) {
+            LongList users = new LongList();
+            LongList deltas = new LongList();
+            WalletJournal.read(batch).forEach((userID, delta) -> {
+                users.add(userID);
+                deltas.add(delta[0]);
+            });
+            write(WalletJournal.batchId(batch), users.toArray(), deltas.toArray());
+            Files.delete(batch);
+            for (int i = 0; i < users.size; i++) {
+                cache.invalidate(users.values[i]);
+            }
+            LOGGER.info("Replayed " + users.size + " journaled wallet updates from " + batch.getFileName());
+        }
+    }
+
+    private String nextBatchId() {
+        // Zero-padded so batch files sort in the order they were sealed
+        return String.format("%013d-%06d", System.currentTimeMillis(), batchCounter.getAndIncrement() % 1_000_000);
+    }
+
+    /**
+     * Stops the flusher and writes everything that is still pending.
+     */
+    @Override
+    public void close() {
+        flushTask.cancel();
+        try {
+            // Retry a failed batch first, then flush anything sealed after it
+            flush();
+            flush();
+            journal.close();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to flush wallet updates on shutdown; they will be replayed on startup", e);
+        }
+    }
+
+    /**
+     * In-memory balance of a user with changes that are not fully written yet.
+     */
+    private static class Dirty {
+        long balance;
+        long pending;
+        long inflight;
+
+        Dirty(long balance) {
+            this.balance = balance;
+        }
+    }
+
+    private record Batch(String id, Path file, long[] users, long[] deltas) { }
+
+    /**
+     * Minimal growable list of primitive longs.
+     */
+    private static class LongList {
+        long[] values = new long[16];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
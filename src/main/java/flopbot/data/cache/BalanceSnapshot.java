@@ -0,0 +1,56 @@
+package flopbot.data.cache;
+
+import org.bson.types.ObjectId;
+
+/**
+ * POJO that represents a user's balance as of a point in the ledger.
+ * The balance includes every ledger entry up to and including {@code through}.
+ */
+public class BalanceSnapshot {
+
+    private Long user;
+    private Long balance;
+    private ObjectId through;
+    private Long time;
+
+    public BalanceSnapshot() { }
+
+    public BalanceSnapshot(Long user, Long balance, ObjectId through) {
+        this.user = user;
+        this.balance = balance;
+        this.through = through;
+        this.time = System.currentTimeMillis();
+    }
+
+    public Long getUser() {
+        return user;
+    }
+
+    public void setUser(Long user) {
+        this.user = user;
+    }
+
+    public Long getBalance() {
+        return balance;
+    }
+
+    public void setBalance(Long balance) {
+        this.balance = balance;
+    }
+
+    public ObjectId getThrough() {
+        return through;
+    }
+
+    public void setThrough(ObjectId through) {
+        this.through = through;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+}
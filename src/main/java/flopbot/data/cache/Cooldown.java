@@ -0,0 +1,43 @@
+package flopbot.data.cache;
+
+/**
+ * POJO that represents when a user's cooldown on a command ends.
+ */
+public class Cooldown {
+
+    private String name;
+    private Long user;
+    private Long expires;
+
+    public Cooldown() { }
+
+    public Cooldown(String name, Long user, Long expires) {
+        this.name = name;
+        this.user = user;
+        this.expires = expires;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getUser() {
+        return user;
+    }
+
+    public void setUser(Long user) {
+        this.user = user;
+    }
+
+    public Long getExpires() {
+        return expires;
+    }
+
+    public void setExpires(Long expires) {
+        this.expires = expires;
+    }
+}
@@ -0,0 +1,33 @@
+package flopbot.data.cache;
+
+/**
+ * POJO that represents a named running total kept up to date with atomic increments.
+ */
+public class Counter {
+
+    private String id;
+    private Double value;
+
+    public Counter() { }
+
+    public Counter(String id, Double value) {
+        this.id = id;
+        this.value = value;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Double getValue() {
+        return value;
+    }
+
+    public void setValue(Double value) {
+        this.value = value;
+    }
+}
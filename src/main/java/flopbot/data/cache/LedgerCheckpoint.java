@@ -0,0 +1,45 @@
+package flopbot.data.cache;
+
+import org.bson.types.ObjectId;
+
+/**
+ * POJO that records how far the ledger has been compacted into balance snapshots.
+ */
+public class LedgerCheckpoint {
+
+    private String id;
+    private ObjectId through;
+    private Long time;
+
+    public LedgerCheckpoint() { }
+
+    public LedgerCheckpoint(String id, ObjectId through) {
+        this.id = id;
+        this.through = through;
+        this.time = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public ObjectId getThrough() {
+        return through;
+    }
+
+    public void setThrough(ObjectId through) {
+        this.through = through;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+}
@@ -0,0 +1,89 @@
+package flopbot.data.cache;
+
+import org.bson.types.ObjectId;
+
+/**
+ * POJO that represents one change to a user's wallet balance.
+ * Ledger entries are never updated or deleted, and their IDs are created when the
+ * change happens so the ledger can be scanned in order from any point.
+ */
+public class LedgerEntry {
+
+    /**
+     * Why a wallet balance changed.
+     */
+    public enum Reason {
+        FAUCET,
+        WITHDRAWAL,
+        WITHDRAWAL_REFUND,
+        BET,
+        PAYOUT,
+        ADJUSTMENT
+    }
+
+    private ObjectId id;
+    private Long user;
+    private Long delta;
+    private Long balance;
+    private Reason reason;
+    private Long time;
+
+    public LedgerEntry() { }
+
+    public LedgerEntry(Long user, Long delta, Long balance, Reason reason) {
+        this.id = new ObjectId();
+        this.user = user;
+        this.delta = delta;
+        this.balance = balance;
+        this.reason = reason;
+        this.time = System.currentTimeMillis();
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public void setId(ObjectId id) {
+        this.id = id;
+    }
+
+    public Long getUser() {
+        return user;
+    }
+
+    public void setUser(Long user) {
+        this.user = user;
+    }
+
+    public Long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Long delta) {
+        this.delta = delta;
+    }
+
+    public Long getBalance() {
+        return balance;
+    }
+
+    public void setBalance(Long balance) {
+        this.balance = balance;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public void setReason(Reason reason) {
+        this.reason = reason;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+}
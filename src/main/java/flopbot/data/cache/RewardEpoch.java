@@ -0,0 +1,74 @@
+package flopbot.data.cache;
+
+/**
+ * POJO that represents the daily snapshot used to compute staking rewards.
+ * The ID is the number of days since 1970-01-01 (UTC) that the epoch covers.
+ */
+public class RewardEpoch {
+
+    private Long id;
+    private Long faucetBalance;
+    private Long totalStaked;
+    private Long rewardPool;
+    private Integer stakes;
+    private Long time;
+
+    public RewardEpoch() { }
+
+    public RewardEpoch(Long id, Long faucetBalance, Long totalStaked, Long rewardPool, Integer stakes) {
+        this.id = id;
+        this.faucetBalance = faucetBalance;
+        this.totalStaked = totalStaked;
+        this.rewardPool = rewardPool;
+        this.stakes = stakes;
+        this.time = System.currentTimeMillis();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getFaucetBalance() {
+        return faucetBalance;
+    }
+
+    public void setFaucetBalance(Long faucetBalance) {
+        this.faucetBalance = faucetBalance;
+    }
+
+    public Long getTotalStaked() {
+        return totalStaked;
+    }
+
+    public void setTotalStaked(Long totalStaked) {
+        this.totalStaked = totalStaked;
+    }
+
+    public Long getRewardPool() {
+        return rewardPool;
+    }
+
+    public void setRewardPool(Long rewardPool) {
+        this.rewardPool = rewardPool;
+    }
+
+    public Integer getStakes() {
+        return stakes;
+    }
+
+    public void setStakes(Integer stakes) {
+        this.stakes = stakes;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+}
@@ -0,0 +1,134 @@
+package flopbot.data.cache;
+
+import org.bson.types.ObjectId;
+
+/**
+ * POJO that represents what one stake earned in one reward epoch.
+ * Amounts are stored in the smallest unit of FLOP (1e-8) so they add up exactly.
+ * A reward is paid once it has been claimed and included in a payout transaction.
+ * Payouts the node rejects are counted in {@code payoutAttempts}, and the reward is skipped once it hits the limit.
+ */
+public class StakeReward {
+
+    private ObjectId id;
+    private Long epoch;
+    private ObjectId stakeId;
+    private Long userId;
+    private String rewardAddress;
+    private Long stakeAmount;
+    private Long amount;
+    private Double share;
+    private Long claimTime;
+    private ObjectId payoutBatch;
+    private String payoutTxid;
+    private Integer payoutAttempts;
+
+    public StakeReward() { }
+
+    public StakeReward(Long epoch, Stake stake, Long stakeAmount, Long amount, Double share) {
+        this.id = new ObjectId();
+        this.epoch = epoch;
+        this.stakeId = stake.getId();
+        this.userId = stake.getUserId();
+        this.rewardAddress = stake.getRewardAddress();
+        this.stakeAmount = stakeAmount;
+        this.amount = amount;
+        this.share = share;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public void setId(ObjectId id) {
+        this.id = id;
+    }
+
+    public Long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(Long epoch) {
+        this.epoch = epoch;
+    }
+
+    public ObjectId getStakeId() {
+        return stakeId;
+    }
+
+    public void setStakeId(ObjectId stakeId) {
+        this.stakeId = stakeId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getRewardAddress() {
+        return rewardAddress;
+    }
+
+    public void setRewardAddress(String rewardAddress) {
+        this.rewardAddress = rewardAddress;
+    }
+
+    public Long getStakeAmount() {
+        return stakeAmount;
+    }
+
+    public void setStakeAmount(Long stakeAmount) {
+        this.stakeAmount = stakeAmount;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public Double getShare() {
+        return share;
+    }
+
+    public void setShare(Double share) {
+        this.share = share;
+    }
+
+    public Long getClaimTime() {
+        return claimTime;
+    }
+
+    public void setClaimTime(Long claimTime) {
+        this.claimTime = claimTime;
+    }
+
+    public ObjectId getPayoutBatch() {
+        return payoutBatch;
+    }
+
+    public void setPayoutBatch(ObjectId payoutBatch) {
+        this.payoutBatch = payoutBatch;
+    }
+
+    public String getPayoutTxid() {
+        return payoutTxid;
+    }
+
+    public void setPayoutTxid(String payoutTxid) {
+        this.payoutTxid = payoutTxid;
+    }
+
+    public Integer getPayoutAttempts() {
+        return payoutAttempts;
+    }
+
+    public void setPayoutAttempts(Integer payoutAttempts) {
+        this.payoutAttempts = payoutAttempts;
+    }
+}
@@ -0,0 +1,190 @@
+package flopbot.data.cache;
+
+import flopbot.util.collections.LongObjectHashMap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory cache of wallet balances keyed by user ID.
+ * Entries are evicted least-recently-used first once the cache is full, and
+ * entries that have not been touched for the idle timeout are dropped lazily.
+ *
+ * @author TechnoVision
+ */
+public class WalletCache {
+
+    /** Returned by {@link #get(long)} when a balance is not cached */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private final LongObjectHashMap<Entry> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int maxSize;
+    private final long idleNanos;
+
+    /** Most recently used entry, and least recently used entry */
+    private Entry head, tail;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of wallets to keep in memory.
+     * @param idleTime how long a wallet may go unused before it is dropped.
+     * @param unit the unit of idleTime.
+     */
+    public WalletCache(int maxSize, long idleTime, TimeUnit unit) {
+        this.maxSize = Math.max(1, maxSize);
+        this.idleNanos = unit.toNanos(idleTime);
+        this.entries = new LongObjectHashMap<>(this.maxSize);
+    }
+
+    /**
+     * Gets a cached balance and marks it as recently used.
+     *
+     * @param userID the ID of the user.
+     * @return the cached balance, or {@link #MISSING} if it is not cached.
+     */
+    public long get(long userID) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(userID);
+            if (entry == null || now - entry.lastAccess > idleNanos) {
+                if (entry != null) {
+                    remove(entry);
+                    evictions.increment();
+                }
+                misses.increment();
+                return MISSING;
+            }
+            entry.lastAccess = now;
+            moveToHead(entry);
+            hits.increment();
+            return entry.balance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the latest balance for a user, evicting old entries if the cache is full.
+     *
+     * @param userID the ID of the user.
+     * @param balance the user's wallet balance.
+     */
+    public void put(long userID, long balance) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(userID);
+            if (entry == null) {
+                entry = new Entry(userID);
+                entries.put(userID, entry);
+            }
+            entry.balance = balance;
+            entry.lastAccess = now;
+            moveToHead(entry);
+
+            // Drop the least recently used entries while over capacity or idle
+            while (tail != null && (entries.size() > maxSize || now - tail.lastAccess > idleNanos)) {
+                remove(tail);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a user's balance from the cache.
+     *
+     * @param userID the ID of the user.
+     */
+    public void invalidate(long userID) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(userID);
+            if (entry != null) {
+                remove(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void moveToHead(Entry entry) {
+        if (entry == head) return;
+        unlink(entry);
+        entry.next = head;
+        if (head != null) head.prev = entry;
+        head = entry;
+        if (tail == null) tail = entry;
+    }
+
+    private void remove(Entry entry) {
+        unlink(entry);
+        entries.remove(entry.user);
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) entry.prev.next = entry.next;
+        if (entry.next != null) entry.next.prev = entry.prev;
+        if (head == entry) head = entry.next;
+        if (tail == entry) tail = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the fraction of lookups served from memory, between 0 and 1.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WalletCache[size=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.2f]",
+                size(), getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+
+    /**
+     * A cached wallet balance linked into the LRU list.
+     */
+    private static class Entry {
+        final long user;
+        long balance;
+        long lastAccess;
+        Entry prev, next;
+
+        Entry(long user) {
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package flopbot.data.json;
+
+/**
+ * Result of the validateaddress RPC command.
+ */
+public class AddressValidation {
+    public boolean isvalid;
+    public String address;
+}
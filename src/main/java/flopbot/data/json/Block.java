@@ -0,0 +1,13 @@
+package flopbot.data.json;
+
+import java.util.List;
+
+/**
+ * Result of the getblock RPC command with verbose output.
+ */
+public class Block {
+    public String hash;
+    public int height;
+    public String previousblockhash;
+    public List<String> tx;
+}
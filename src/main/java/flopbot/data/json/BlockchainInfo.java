@@ -0,0 +1,10 @@
+package flopbot.data.json;
+
+/**
+ * Result of the getblockchaininfo RPC command.
+ */
+public class BlockchainInfo {
+    public String chain;
+    public int blocks;
+    public double difficulty;
+}
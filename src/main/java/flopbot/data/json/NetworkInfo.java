@@ -0,0 +1,9 @@
+package flopbot.data.json;
+
+/**
+ * Result of the getnetworkinfo RPC command.
+ */
+public class NetworkInfo {
+    public String subversion;
+    public int connections;
+}
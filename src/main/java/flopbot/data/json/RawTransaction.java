@@ -0,0 +1,18 @@
+package flopbot.data.json;
+
+import java.util.List;
+
+/**
+ * Result of the getrawtransaction RPC command with verbose output.
+ * Only the inputs are read, to find which outputs a transaction spends.
+ */
+public class RawTransaction {
+    public String txid;
+    public List<Vin> vin;
+
+    public static class Vin {
+        public String txid;
+        public int vout;
+        public String coinbase;
+    }
+}
@@ -0,0 +1,19 @@
+package flopbot.data.json;
+
+/**
+ * Represents a single JSON-RPC request sent to the Flopcoin node.
+ * Used by Gson to convert java code to JSON.
+ */
+public class RpcRequest {
+    public String jsonrpc;
+    public String id;
+    public String method;
+    public Object[] params;
+
+    public RpcRequest(String jsonrpc, String id, String method, Object[] params) {
+        this.jsonrpc = jsonrpc;
+        this.id = id;
+        this.method = method;
+        this.params = params;
+    }
+}
@@ -0,0 +1,21 @@
+package flopbot.data.json;
+
+import java.util.List;
+
+/**
+ * Result of the gettxout RPC command for an unspent transaction output.
+ */
+public class TxOut {
+    public String bestblock;
+    public int confirmations;
+    public double value;
+    public ScriptPubKey scriptPubKey;
+    public boolean coinbase;
+
+    public static class ScriptPubKey {
+        public String asm;
+        public String hex;
+        public String type;
+        public List<String> addresses;
+    }
+}
@@ -3,20 +3,18 @@ package flopbot.handlers;
 import flopbot.FlopBot;
 import flopbot.commands.casino.BlackjackCommand;
 import flopbot.commands.casino.CrashCommand;
+import flopbot.handlers.ComponentId.Action;
+import flopbot.handlers.ComponentId.Game;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
-import net.dv8tion.jda.api.exceptions.ErrorHandler;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.InteractionHook;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 import net.dv8tion.jda.api.interactions.components.buttons.ButtonStyle;
-import net.dv8tion.jda.api.requests.ErrorResponse;
 import net.dv8tion.jda.api.requests.restaction.interactions.ReplyCallbackAction;
 
-import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,14 +26,14 @@ public class ButtonHandler extends ListenerAdapter {
 
     public static final int MINUTES_TO_DISABLE = 3;
 
-    public static final ScheduledExecutorService executor = Executors.newScheduledThreadPool(20);
-    public static final Map<String, List<MessageEmbed>> menus = new HashMap<>();
-    public static final Map<String, List<Button>> buttons = new HashMap<>();
+    /** Buttons and pages for every open message, set once when the handler is created */
+    public static ComponentStore components;
 
     private FlopBot bot;
 
     public ButtonHandler(FlopBot bot) {
         this.bot = bot;
+        components = new ComponentStore(bot.scheduler, MINUTES_TO_DISABLE, TimeUnit.MINUTES);
     }
 
     /**
@@ -45,109 +43,99 @@ public class ButtonHandler extends ListenerAdapter {
      * @param action the ReplyCallbackAction to add components to.
      * @param embeds the embed pages.
      */
-    public static void sendPaginatedMenu(String userID, ReplyCallbackAction action, List<MessageEmbed> embeds) {
-        String uuid = userID + ":" + UUID.randomUUID();
-        List<Button> components = getPaginationButtons(uuid, embeds.size());
-        buttons.put(uuid, components);
-        menus.put(uuid, embeds);
-        action.addActionRow(components).queue(interactionHook -> ButtonHandler.disableButtons(uuid, interactionHook));
+    public static void sendPaginatedMenu(long userID, ReplyCallbackAction action, List<MessageEmbed> embeds) {
+        long session = ComponentId.newSession();
+        List<Button> buttons = getPaginationButtons(userID, session, 0, embeds.size());
+        components.putMenu(session, buttons, embeds);
+        action.addActionRow(buttons).queue(interactionHook -> ButtonHandler.disableButtons(session, interactionHook));
     }
 
     /**
      * Get a list of buttons for paginated embeds.
+     * Every button carries the page being shown, so a press needs no stored state to find the next page.
      *
-     * @param uuid the unique ID generated for these buttons.
+     * @param userID the ID of the user who owns this menu.
+     * @param session the session ID generated for these buttons.
+     * @param page the page being shown.
      * @param maxPages the total number of embed pages.
      * @return A list of components to use on a paginated embed.
      */
-    private static List<Button> getPaginationButtons(String uuid, int maxPages) {
-        return Arrays.asList(
-                Button.primary("pagination:prev:"+uuid, "Previous").asDisabled(),
-                Button.of(ButtonStyle.SECONDARY, "pagination:page:0", "1/"+maxPages).asDisabled(),
-                Button.primary("pagination:next:"+uuid, "Next")
+    private static List<Button> getPaginationButtons(long userID, long session, int page, int maxPages) {
+        Button prev = Button.primary(ComponentId.encode(Game.PAGINATION, Action.PREV, userID, session, 0, page), "Previous");
+        Button label = Button.of(ButtonStyle.SECONDARY, ComponentId.encode(Game.PAGINATION, Action.PAGE, userID, session, 0, page), (page + 1) + "/" + maxPages);
+        Button next = Button.primary(ComponentId.encode(Game.PAGINATION, Action.NEXT, userID, session, 0, page), "Next");
+        return List.of(
+                page == 0 ? prev.asDisabled() : prev,
+                label.asDisabled(),
+                page == maxPages - 1 ? next.asDisabled() : next
         );
     }
 
     /**
-     * Schedules a timer task to disable buttons and clear cache after a set time.
+     * Disables buttons and clears cache after a set time.
      *
-     * @param uuid the uuid of the components to disable.
+     * @param session the session of the components to disable.
      * @param hook a interaction hook pointing to original message.
      */
-    public static void disableButtons(String uuid, InteractionHook hook) {
-        Runnable task = () -> {
-            List<Button> actionRow = buttons.get(uuid);
-            List<Button> newActionRow = new ArrayList<>();
-            for (Button button : actionRow) {
-                newActionRow.add(button.asDisabled());
-            }
-            hook.editOriginalComponents(ActionRow.of(newActionRow)).queue(null, new ErrorHandler().ignore(ErrorResponse.UNKNOWN_MESSAGE));
-            buttons.remove(uuid);
-            menus.remove(uuid);
-        };
-        executor.schedule(task, MINUTES_TO_DISABLE, TimeUnit.MINUTES);
+    public static void disableButtons(long session, InteractionHook hook) {
+        components.expire(session, hook);
     }
 
     @Override
     public void onButtonInteraction(ButtonInteractionEvent event) {
-        // Check that these are 'help' buttons
-        String[] pressedArgs = event.getComponentId().split(":");
-
-        // Check if user owns this menu
-        long userID = Long.parseLong(pressedArgs[2]);
-        if (userID != event.getUser().getIdLong()) return;
-
-        // Get other buttons
-        String uuid = userID+":"+pressedArgs[3];
-        List<Button> components = buttons.get(uuid);
-        if (components == null) return;
-        String[] storedArgs = components.get(0).getId().split(":");
-
-        if (pressedArgs[0].equals("pagination") && storedArgs[0].equals("pagination")) {
-            if (pressedArgs[1].equals("next")) {
-                // Move to next embed
-                int page = Integer.parseInt(components.get(1).getId().split(":")[2]) + 1;
-                List<MessageEmbed> embeds = menus.get(uuid);
-                if (page < embeds.size()) {
-                    // Update buttons
-                    components.set(1, components.get(1).withId("pagination:page:" + page).withLabel((page + 1) + "/" + embeds.size()));
-                    components.set(0, components.get(0).asEnabled());
-                    if (page == embeds.size() - 1) {
-                        components.set(2, components.get(2).asDisabled());
-                    }
-                    buttons.put(uuid, components);
-                    event.editComponents(ActionRow.of(components)).setEmbeds(embeds.get(page)).queue();
-                }
-            } else if (pressedArgs[1].equals("prev")) {
-                // Move to previous embed
-                int page = Integer.parseInt(components.get(1).getId().split(":")[2]) - 1;
-                List<MessageEmbed> embeds = menus.get(uuid);
-                if (page >= 0) {
-                    // Update buttons
-                    components.set(1, components.get(1).withId("pagination:page:" + page).withLabel((page + 1) + "/" + embeds.size()));
-                    components.set(2, components.get(2).asEnabled());
-                    if (page == 0) {
-                        components.set(0, components.get(0).asDisabled());
-                    }
-                    buttons.put(uuid, components);
-                    event.editComponents(ActionRow.of(components)).setEmbeds(embeds.get(page)).queue();
-                }
+        String id = event.getComponentId();
+        if (!ComponentId.isValid(id)) return;
+
+        // Check if user owns this menu, buttons without an owner are shared by everyone in the game
+        long userID = ComponentId.owner(id);
+        if (userID != 0 && userID != event.getUser().getIdLong()) return;
+
+        // Check that the buttons haven't expired
+        long session = ComponentId.session(id);
+        if (components.getButtons(session) == null) return;
+
+        switch (ComponentId.game(id)) {
+            case PAGINATION -> turnPage(event, userID, session, ComponentId.action(id), ComponentId.page(id));
+            case BLACKJACK -> {
+                long bet = ComponentId.bet(id);
+                MessageEmbed embed = switch (ComponentId.action(id)) {
+                    case HIT -> BlackjackCommand.hit(bot.walletHandler, event.getUser(), bet, session);
+                    case STAND -> BlackjackCommand.stand(bot.walletHandler, event.getUser(), bet, session);
+                    default -> null;
+                };
+                if (embed == null) return;
+                event.editComponents(ActionRow.of(components.getButtons(session))).setEmbeds(embed).queue();
             }
-        }
-        else if (pressedArgs[0].equals("blackjack") && storedArgs[0].equals("blackjack")) {
-            long bet = Long.parseLong(pressedArgs[4]);
-            MessageEmbed embed = null;
-            if (pressedArgs[1].equals("hit")) {
-                embed = BlackjackCommand.hit(bot.walletHandler, event.getUser(), bet, uuid);
-            } else if (pressedArgs[1].equals("stand")) {
-                embed = BlackjackCommand.stand(bot.walletHandler, event.getUser(), bet, uuid);
+            case CRASH -> {
+                if (ComponentId.action(id) != Action.CASHOUT) return;
+                if (userID == 0) {
+                    // Shared round: the message is updated by the round's tick loop, so only reply to this player
+                    MessageEmbed result = CrashCommand.cashoutRound(event.getUser(), event.getChannel().getIdLong(), session);
+                    event.replyEmbeds(result).setEphemeral(true).queue();
+                    return;
+                }
+                // The result goes through the same edit queue as the ticks, so a stale tick can't overwrite it
+                event.deferEdit().queue();
+                CrashCommand.cashout(event.getUser(), event.getHook());
             }
-            event.editComponents(ActionRow.of(buttons.get(uuid))).setEmbeds(embed).queue();
-        }
-        else if (pressedArgs[0].equals("crash") && storedArgs[0].equals("crash")) {
-            MessageEmbed embed = CrashCommand.cashout(bot.walletHandler, event.getUser());
-            Button disabledButton = buttons.remove(uuid).getFirst().asDisabled();
-            event.editComponents(ActionRow.of(disabledButton)).setEmbeds(embed).queue();
         }
     }
+
+    /**
+     * Moves a paginated menu one page forward or back from the page on the pressed button.
+     */
+    private void turnPage(ButtonInteractionEvent event, long userID, long session, Action action, int page) {
+        List<MessageEmbed> embeds = components.getPages(session);
+        if (embeds == null) return;
+        int next = switch (action) {
+            case NEXT -> page + 1;
+            case PREV -> page - 1;
+            default -> -1;
+        };
+        if (next < 0 || next >= embeds.size()) return;
+
+        List<Button> buttons = getPaginationButtons(userID, session, next, embeds.size());
+        components.put(session, buttons);
+        event.editComponents(ActionRow.of(buttons)).setEmbeds(embeds.get(next)).queue();
+    }
 }
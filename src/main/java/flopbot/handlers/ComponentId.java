@@ -0,0 +1,124 @@
+package flopbot.handlers;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compact, fixed-width encoding for button component IDs.
+ * An ID is one character each for the game and action, followed by lowercase hex fields at
+ * fixed offsets: owner (16), session (16), bet (16), and page (4), for 54 characters in total.
+ * Every field is read straight out of the ID string by index, so routing a click allocates nothing.
+ * IDs in any other format, such as buttons sent before this encoding existed, fail {@link #isValid}.
+ */
+public final class ComponentId {
+
+    /** The feature that owns a button */
+    public enum Game {
+        PAGINATION, BLACKJACK, CRASH;
+
+        private static final Game[] VALUES = values();
+    }
+
+    /** What pressing a button does */
+    public enum Action {
+        PREV, PAGE, NEXT, HIT, STAND, CASHOUT;
+
+        private static final Action[] VALUES = values();
+    }
+
+    private static final int GAME = 0;
+    private static final int ACTION = 1;
+    private static final int OWNER = 2;
+    private static final int SESSION = OWNER + 16;
+    private static final int BET = SESSION + 16;
+    private static final int PAGE = BET + 16;
+    public static final int LENGTH = PAGE + 4;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ComponentId() { }
+
+    /**
+     * Builds a component ID.
+     *
+     * @param game the feature that owns the button.
+     * @param action what pressing the button does.
+     * @param owner the ID of the only user allowed to press it.
+     * @param session the session the button belongs to, see {@link #newSession()}.
+     * @param bet the bet placed, or 0 if there is none.
+     * @param page the page shown when the button was sent, from 0 to 65535.
+     * @return the encoded component ID.
+     */
+    public static String encode(Game game, Action action, long owner, long session, long bet, int page) {
+        char[] id = new char[LENGTH];
+        id[GAME] = (char) ('0' + game.ordinal());
+        id[ACTION] = (char) ('0' + action.ordinal());
+        writeHex(id, OWNER, 16, owner);
+        writeHex(id, SESSION, 16, session);
+        writeHex(id, BET, 16, bet);
+        writeHex(id, PAGE, 4, page);
+        return new String(id);
+    }
+
+    /**
+     * @return a random session ID for a new set of buttons.
+     */
+    public static long newSession() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Checks that an ID has this encoding, so the field getters can't fail.
+     *
+     * @param id the component ID of a pressed button.
+     * @return true if every field is present and well-formed.
+     */
+    public static boolean isValid(String id) {
+        if (id.length() != LENGTH) return false;
+        int game = id.charAt(GAME) - '0';
+        int action = id.charAt(ACTION) - '0';
+        if (game < 0 || game >= Game.VALUES.length || action < 0 || action >= Action.VALUES.length) return false;
+        for (int i = OWNER; i < LENGTH; i++) {
+            if (Character.digit(id.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    public static Game game(String id) {
+        return Game.VALUES[id.charAt(GAME) - '0'];
+    }
+
+    public static Action action(String id) {
+        return Action.VALUES[id.charAt(ACTION) - '0'];
+    }
+
+    public static long owner(String id) {
+        return readHex(id, OWNER, 16);
+    }
+
+    public static long session(String id) {
+        return readHex(id, SESSION, 16);
+    }
+
+    public static long bet(String id) {
+        return readHex(id, BET, 16);
+    }
+
+    public static int page(String id) {
+        return (int) readHex(id, PAGE, 4);
+    }
+
+    private static void writeHex(char[] id, int offset, int width, long value) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            id[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static long readHex(String id, int offset, int width) {
+        long value = 0;
+        for (int i = offset; i < offset + width; i++) {
+            value = (value << 4) | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,151 @@
+package flopbot.handlers;
+
+import flopbot.util.TaskScheduler;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.exceptions.ErrorHandler;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe store for the buttons and pages behind interactive messages, keyed by session ID.
+ * Entries are replaced as a whole, so a button press never sees a half-updated row.
+ * Expiry is grouped into fixed-width buckets: every message that expires in the same bucket shares
+ * one scheduler task, which disables all of their buttons in a single pass. Timer overhead therefore
+ * depends on the expiry window, not on how many menus are open.
+ */
+public class ComponentStore {
+
+    private static final long BUCKET_MILLIS = 1000;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Sessions waiting to expire, keyed by bucket number */
+    private final Map<Long, Queue<Long>> expiring = new ConcurrentHashMap<>();
+
+    private final TaskScheduler scheduler;
+    private final long ttlMillis;
+
+    /**
+     * @param scheduler the scheduler that runs expiry batches.
+     * @param ttl how long a message stays interactive after it is sent.
+     * @param unit the unit of ttl.
+     */
+    public ComponentStore(TaskScheduler scheduler, long ttl, TimeUnit unit) {
+        this.scheduler = scheduler;
+        this.ttlMillis = unit.toMillis(ttl);
+    }
+
+    /**
+     * Stores the buttons for a message, keeping any pages already stored with them.
+     *
+     * @param session the session ID shared by these buttons.
+     * @param buttons the buttons on the message.
+     */
+    public void put(long session, List<Button> buttons) {
+        entries.compute(session, (id, old) -> new Entry(List.copyOf(buttons),
+                (old != null) ? old.pages : null, (old != null) ? old.hook : null));
+    }
+
+    /**
+     * Stores the buttons and embed pages for a paginated menu.
+     *
+     * @param session the session ID shared by these buttons.
+     * @param buttons the pagination buttons.
+     * @param pages the embed pages.
+     */
+    public void putMenu(long session, List<Button> buttons, List<MessageEmbed> pages) {
+        entries.put(session, new Entry(List.copyOf(buttons), List.copyOf(pages), null));
+    }
+
+    /**
+     * @return the buttons stored for a message, or null if there are none.
+     */
+    public List<Button> getButtons(long session) {
+        Entry entry = entries.get(session);
+        return (entry != null) ? entry.buttons : null;
+    }
+
+    /**
+     * @return the embed pages stored for a menu, or null if there are none.
+     */
+    public List<MessageEmbed> getPages(long session) {
+        Entry entry = entries.get(session);
+        return (entry != null) ? entry.pages : null;
+    }
+
+    /**
+     * Atomically replaces the buttons for a message.
+     *
+     * @param session the session ID shared by these buttons.
+     * @param update maps the current buttons to new ones.
+     * @return the new buttons, or null if nothing is stored under this ID.
+     */
+    public List<Button> update(long session, UnaryOperator<List<Button>> update) {
+        Entry entry = entries.computeIfPresent(session, (id, old) ->
+                new Entry(List.copyOf(update.apply(old.buttons)), old.pages, old.hook));
+        return (entry != null) ? entry.buttons : null;
+    }
+
+    /**
+     * Removes a message from the store without editing it.
+     *
+     * @return the buttons that were stored, or null if there were none.
+     */
+    public List<Button> remove(long session) {
+        Entry entry = entries.remove(session);
+        return (entry != null) ? entry.buttons : null;
+    }
+
+    /**
+     * Disables a message's buttons and forgets it once the TTL has passed.
+     *
+     * @param session the session of the components to disable.
+     * @param hook a interaction hook pointing to original message.
+     */
+    public void expire(long session, InteractionHook hook) {
+        if (entries.computeIfPresent(session, (id, old) -> new Entry(old.buttons, old.pages, hook)) == null) return;
+
+        // Round up, so a message is never disabled before its TTL
+        long bucket = (TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) + ttlMillis) / BUCKET_MILLIS + 1;
+        expiring.computeIfAbsent(bucket, b -> {
+            long delay = b * BUCKET_MILLIS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+            scheduler.schedule(() -> expireBucket(b), delay, TimeUnit.MILLISECONDS);
+            return new ConcurrentLinkedQueue<>();
+        }).add(session);
+    }
+
+    /**
+     * @return the number of messages currently stored.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void expireBucket(long bucket) {
+        Queue<Long> batch = expiring.remove(bucket);
+        if (batch == null) return;
+        ErrorHandler ignoreDeleted = new ErrorHandler().ignore(ErrorResponse.UNKNOWN_MESSAGE);
+        for (long session : batch) {
+            Entry entry = entries.remove(session);
+            if (entry == null || entry.hook == null) continue;
+            List<Button> disabled = new ArrayList<>(entry.buttons.size());
+            for (Button button : entry.buttons) {
+                disabled.add(button.asDisabled());
+            }
+            entry.hook.editOriginalComponents(ActionRow.of(disabled)).queue(null, ignoreDeleted);
+        }
+    }
+
+    private record Entry(List<Button> buttons, List<MessageEmbed> pages, InteractionHook hook) { }
+}
@@ -0,0 +1,47 @@
+package flopbot.handlers;
+
+import flopbot.FlopBot;
+import flopbot.commands.CommandRegistry;
+import flopbot.commands.CommandStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Periodically logs the bot's internal metrics, so cache, scheduler, message edit,
+ * and per-command timings can be followed from the logs without a debugger.
+ */
+public class MetricsHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsHandler.class.getName());
+
+    private final FlopBot bot;
+
+    /**
+     * Starts logging metrics every interval, unless the interval is 0.
+     *
+     * @param bot the bot whose metrics are logged.
+     * @param intervalMinutes minutes between reports, or 0 to disable them.
+     */
+    public MetricsHandler(FlopBot bot, int intervalMinutes) {
+        this.bot = bot;
+        if (intervalMinutes > 0) {
+            bot.scheduler.scheduleAtFixedRate(this::log, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    private void log() {
+        StringBuilder report = new StringBuilder("Metrics:");
+        report.append("\n  ").append(bot.scheduler);
+        report.append("\n  ").append(bot.edits);
+        report.append("\n  ").append(bot.walletHandler.getCache());
+        report.append("\n  ").append(bot.coinPaprika);
+        for (CommandStats stats : CommandRegistry.getStats().values()) {
+            // Skip commands nobody has used yet to keep the report short
+            if (stats.getExecutions() > 0 || stats.getRejections() > 0) {
+                report.append("\n  ").append(stats);
+            }
+        }
+        LOGGER.info(report.toString());
+    }
+}
@@ -0,0 +1,319 @@
+package flopbot.handlers;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.*;
+import flopbot.FlopBot;
+import flopbot.data.cache.RewardEpoch;
+import flopbot.data.cache.Stake;
+import flopbot.data.cache.StakeReward;
+import flopbot.rpc.FlopcoinRpcClient;
+import flopbot.rpc.RpcException;
+import org.bson.types.ObjectId;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computes staking rewards once per daily epoch and pays claimed rewards in batches.
+ * At the start of each epoch (midnight UTC) the faucet balance and every active stake are
+ * snapshotted once, and each stake's share of the daily pool is stored as an entitlement.
+ * Claiming only marks the entitlement, and a payout job sends all claimed rewards in a
+ * few {@code sendmany} transactions instead of one transaction per claim.
+ */
+public class RewardHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(RewardHandler.class.getName());
+
+    /** 10% of the faucet balance is distributed per month, spread evenly over 30 days */
+    private static final long POOL_DIVISOR = 10 * 30;
+
+    /** Maximum number of outputs in one payout transaction */
+    private static final int MAX_OUTPUTS = 500;
+
+    /** Times the node may reject a payout to one address before its rewards are left for an admin */
+    private static final int MAX_PAYOUT_ATTEMPTS = 5;
+
+    private static final int DUPLICATE_KEY = 11000;
+    private static final FindOneAndUpdateOptions RETURN_UPDATED = new FindOneAndUpdateOptions()
+            .returnDocument(ReturnDocument.AFTER);
+
+    private final FlopBot bot;
+    private final long payoutIntervalMinutes;
+
+    /** Smallest total sent to one address, so no output falls below the node's dust limit */
+    private final long minPayout;
+
+    public RewardHandler(FlopBot bot) {
+        this.bot = bot;
+        this.payoutIntervalMinutes = bot.getConfigInt("STAKE_PAYOUT_INTERVAL_MINUTES", 15);
+        String minPayout = bot.config.get("STAKE_MIN_PAYOUT", System.getenv("STAKE_MIN_PAYOUT"));
+        this.minPayout = toUnits((minPayout != null && !minPayout.isBlank()) ? Double.parseDouble(minPayout.trim()) : 1);
+
+        long stuck = bot.database.stakeRewards.countDocuments(Filters.and(
+                Filters.ne("payoutBatch", null), Filters.eq("payoutTxid", null)));
+        if (stuck > 0) {
+            LOGGER.severe(stuck + " stake rewards were sent for payout but never confirmed; check the node wallet before releasing them");
+        }
+
+        // Start today's epoch now if the bot was offline at midnight, then check every hour on the hour
+        // so a new epoch starts at midnight, or as soon as the node is reachable again
+        long hour = TimeUnit.HOURS.toMillis(1);
+        bot.scheduler.execute(() -> run(this::startEpoch, "start reward epoch"));
+        bot.scheduler.scheduleAtFixedRate(() -> run(this::startEpoch, "start reward epoch"),
+                millisUntilNextEpoch() % hour, hour, TimeUnit.MILLISECONDS);
+        bot.scheduler.scheduleWithFixedDelay(() -> run(this::payout, "pay stake rewards"),
+                payoutIntervalMinutes, payoutIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return the ID of the current epoch, in days since 1970-01-01 (UTC).
+     */
+    public static long currentEpoch() {
+        return LocalDate.now(ZoneOffset.UTC).toEpochDay();
+    }
+
+    /**
+     * @return milliseconds until the next epoch starts at midnight UTC.
+     */
+    public static long millisUntilNextEpoch() {
+        Instant next = LocalDate.now(ZoneOffset.UTC).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        return Math.max(0, Duration.between(Instant.now(), next).toMillis());
+    }
+
+    /**
+     * @return how often claimed rewards are paid out, in minutes.
+     */
+    public long getPayoutIntervalMinutes() {
+        return payoutIntervalMinutes;
+    }
+
+    /**
+     * Snapshots the faucet balance and all active stakes, and stores every stake's reward for the current epoch.
+     * Safe to rerun: an epoch is only marked complete once all of its rewards are stored.
+     *
+     * @throws RpcException if the faucet balance can't be read.
+     */
+    public synchronized void startEpoch() throws RpcException {
+        long epoch = currentEpoch();
+        if (bot.database.rewardEpochs.find(Filters.eq("_id", epoch)).first() != null) return;
+
+        long faucetBalance = toUnits(bot.rpc.getBalance());
+        long rewardPool = faucetBalance / POOL_DIVISOR;
+        List<Stake> stakes = bot.database.stakes.find().into(new ArrayList<>());
+        long totalStaked = 0;
+        for (Stake stake : stakes) {
+            totalStaked += toUnits(stake.getAmount());
+        }
+
+        if (totalStaked > 0 && rewardPool > 0) {
+            BigDecimal pool = BigDecimal.valueOf(rewardPool);
+            BigDecimal total = BigDecimal.valueOf(totalStaked);
+            List<StakeReward> rewards = new ArrayList<>(stakes.size());
+            for (Stake stake : stakes) {
+                long stakeAmount = toUnits(stake.getAmount());
+                long amount = pool.multiply(BigDecimal.valueOf(stakeAmount))
+                        .divide(total, 0, RoundingMode.DOWN)
+                        .longValue();
+                rewards.add(new StakeReward(epoch, stake, stakeAmount, amount, (double) stakeAmount / totalStaked));
+            }
+            try {
+                bot.database.stakeRewards.insertMany(rewards, new InsertManyOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                // Rewards from an earlier, interrupted run of this epoch are already stored
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    if (error.getCode() != DUPLICATE_KEY) throw e;
+                }
+            }
+        }
+
+        try {
+            bot.database.rewardEpochs.insertOne(new RewardEpoch(epoch, faucetBalance, totalStaked, rewardPool, stakes.size()));
+        } catch (MongoWriteException e) {
+            if (e.getError().getCode() != DUPLICATE_KEY) throw e;
+        }
+        LOGGER.info("Started reward epoch " + epoch + ": " + stakes.size() + " stakes sharing " + fromUnits(rewardPool) + " FLOP");
+    }
+
+    /**
+     * Gets a stake's reward for the current epoch.
+     *
+     * @param stake the stake.
+     * @return the reward, or null if the stake has no reward this epoch.
+     */
+    public StakeReward getReward(Stake stake) {
+        return bot.database.stakeRewards.find(Filters.and(
+                Filters.eq("stakeId", stake.getId()),
+                Filters.eq("epoch", currentEpoch())
+        )).first();
+    }
+
+    /**
+     * Claims a stake's reward for the current epoch, queueing it for the next payout.
+     *
+     * @param stake the stake.
+     * @return the claimed reward, or null if there is no unclaimed reward this epoch.
+     */
+    public StakeReward claim(Stake stake) {
+        return bot.database.stakeRewards.findOneAndUpdate(
+                Filters.and(
+                        Filters.eq("stakeId", stake.getId()),
+                        Filters.eq("epoch", currentEpoch()),
+                        Filters.eq("claimTime", null)
+                ),
+                Updates.set("claimTime", System.currentTimeMillis()),
+                RETURN_UPDATED
+        );
+    }
+
+    /**
+     * Sends all claimed, unpaid rewards, combining rewards to the same address into one output.
+     * Rewards are tagged with a payout batch before sending, so a crash mid-payout can never pay them twice.
+     * Addresses owed less than the minimum payout are skipped until later rewards bring them over it.
+     */
+    public synchronized void payout() {
+        List<StakeReward> claimed = bot.database.stakeRewards.find(Filters.and(
+                Filters.ne("claimTime", null),
+                Filters.eq("payoutBatch", null),
+                Filters.not(Filters.gte("payoutAttempts", MAX_PAYOUT_ATTEMPTS))
+        )).into(new ArrayList<>());
+        if (claimed.isEmpty()) return;
+
+        Map<String, List<StakeReward>> byAddress = new LinkedHashMap<>();
+        for (StakeReward reward : claimed) {
+            byAddress.computeIfAbsent(reward.getRewardAddress(), k -> new ArrayList<>()).add(reward);
+        }
+
+        List<ObjectId> empty = new ArrayList<>();
+        Map<String, List<ObjectId>> ids = new LinkedHashMap<>();
+        Map<String, BigDecimal> amounts = new LinkedHashMap<>();
+        for (Map.Entry<String, List<StakeReward>> entry : byAddress.entrySet()) {
+            long total = 0;
+            List<ObjectId> rewardIds = new ArrayList<>();
+            for (StakeReward reward : entry.getValue()) {
+                rewardIds.add(reward.getId());
+                total += reward.getAmount();
+            }
+            if (total == 0) {
+                // Every reward to this address rounded down to nothing
+                empty.addAll(rewardIds);
+                continue;
+            }
+            if (total < minPayout) continue;
+            ids.put(entry.getKey(), rewardIds);
+            amounts.put(entry.getKey(), fromUnits(total));
+            if (amounts.size() == MAX_OUTPUTS) {
+                send(ids, amounts);
+                ids = new LinkedHashMap<>();
+                amounts = new LinkedHashMap<>();
+            }
+        }
+        if (!amounts.isEmpty()) {
+            send(ids, amounts);
+        }
+        if (!empty.isEmpty()) {
+            bot.database.stakeRewards.updateMany(
+                    Filters.and(Filters.in("_id", empty), Filters.eq("payoutBatch", null)),
+                    Updates.combine(Updates.set("payoutBatch", new ObjectId()), Updates.set("payoutTxid", ""))
+            );
+        }
+    }
+
+    /**
+     * Sends one payout transaction. If the node rejects it because of its outputs, such as an invalid
+     * address, the batch is split in half and each half sent on its own, so one bad output only holds
+     * up its own rewards. A lone rejected output counts an attempt against its rewards.
+     *
+     * @param ids the IDs of the rewards paid to each address.
+     * @param amounts the amount paid to each address.
+     */
+    private void send(Map<String, List<ObjectId>> ids, Map<String, BigDecimal> amounts) {
+        List<ObjectId> all = new ArrayList<>();
+        ids.values().forEach(all::addAll);
+        ObjectId batch = new ObjectId();
+        bot.database.stakeRewards.updateMany(
+                Filters.and(Filters.in("_id", all), Filters.eq("payoutBatch", null)),
+                Updates.set("payoutBatch", batch)
+        );
+        try {
+            String txid = bot.rpc.sendMany(amounts);
+            bot.database.stakeRewards.updateMany(Filters.eq("payoutBatch", batch), Updates.set("payoutTxid", txid));
+            LOGGER.info("Paid " + all.size() + " stake rewards to " + amounts.size() + " addresses in " + txid);
+        } catch (RpcException e) {
+            if (e.getCode() == 0) {
+                // The transaction may or may not have been sent, so leave the batch for an admin to check
+                LOGGER.log(Level.SEVERE, "Stake reward payout " + batch + " has an unknown outcome", e);
+                return;
+            }
+
+            // The node rejected the transaction, so it is safe to retry these rewards
+            bot.database.stakeRewards.updateMany(Filters.eq("payoutBatch", batch), Updates.unset("payoutBatch"));
+            if (e.getCode() == FlopcoinRpcClient.WALLET_INSUFFICIENT_FUNDS || e.getCode() == FlopcoinRpcClient.WALLET_UNLOCK_NEEDED) {
+                // A problem with the node's wallet, not the outputs, so retry the whole batch next time
+                LOGGER.log(Level.WARNING, "Node rejected stake reward payout, will retry", e);
+            } else if (amounts.size() > 1) {
+                List<String> addresses = new ArrayList<>(amounts.keySet());
+                List<String> half = addresses.subList(0, addresses.size() / 2);
+                send(subMap(ids, half), subMap(amounts, half));
+                List<String> rest = addresses.subList(addresses.size() / 2, addresses.size());
+                send(subMap(ids, rest), subMap(amounts, rest));
+            } else {
+                String address = amounts.keySet().iterator().next();
+                bot.database.stakeRewards.updateMany(Filters.in("_id", all), Updates.inc("payoutAttempts", 1));
+                long failed = bot.database.stakeRewards.countDocuments(Filters.and(
+                        Filters.in("_id", all), Filters.gte("payoutAttempts", MAX_PAYOUT_ATTEMPTS)));
+                if (failed > 0) {
+                    LOGGER.log(Level.SEVERE, "Node rejected stake reward payout to " + address + " " + MAX_PAYOUT_ATTEMPTS
+                            + " times, " + failed + " rewards will no longer be retried", e);
+                } else {
+                    LOGGER.log(Level.WARNING, "Node rejected stake reward payout to " + address + ", will retry", e);
+                }
+            }
+        }
+    }
+
+    private static <V> Map<String, V> subMap(Map<String, V> map, List<String> keys) {
+        Map<String, V> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            result.put(key, map.get(key));
+        }
+        return result;
+    }
+
+    /**
+     * @param amount an amount of FLOP.
+     * @return the amount in the smallest unit of FLOP, rounded down.
+     */
+    public static long toUnits(double amount) {
+        return BigDecimal.valueOf(amount).movePointRight(8).setScale(0, RoundingMode.DOWN).longValue();
+    }
+
+    /**
+     * @param units an amount in the smallest unit of FLOP.
+     * @return the amount of FLOP.
+     */
+    public static BigDecimal fromUnits(long units) {
+        return BigDecimal.valueOf(units, 8);
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static void run(Task task, String name) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to " + name, e);
+        }
+    }
+}
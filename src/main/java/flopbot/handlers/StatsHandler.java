@@ -1,26 +1,26 @@
 package flopbot.handlers;
 
-import io.github.cdimascio.dotenv.Dotenv;
+import flopbot.FlopBot;
+import flopbot.market.MarketDataService;
+import flopbot.util.EditCoalescer;
+import flopbot.util.TaskScheduler;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.channel.concrete.VoiceChannel;
 import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
-import okhttp3.*;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONObject;
 
-import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A simplified stats handler that updates four channels:
  * - One showing the total Discord member count.
- * - One displaying the current FLOP coin price from CoinPaprika.
+ * - One displaying the current FLOP coin price.
  * - One displaying the 24 h Volume.
  * - One displaying the Market Cap.
  */
@@ -37,27 +37,36 @@ public class StatsHandler extends ListenerAdapter {
     public static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0.########");
     public static final DecimalFormat SUFFIX_FORMAT = new DecimalFormat("0.###");
 
-    // CoinPaprika coin ID for FLOP.
-    public static final String COIN_PAPRIKA_ID = "flop-flopcoin";
-    public static final String SUPPLY_URL      = "https://explorer.flopcoin.net/ext/getmoneysupply";
-
     // Required configuration from environment variables or .env file
     private final @NotNull String GUILD_ID;
 
-    public StatsHandler(Dotenv config) {
-        GUILD_ID = config.get("GUILD_ID", System.getenv("GUILD_ID"));
+    private final @NotNull MarketDataService market;
+    private final @NotNull TaskScheduler scheduler;
+
+    /** Discord allows two renames per channel every ten minutes, so space them out */
+    private final @NotNull EditCoalescer renames;
+
+    /** Set once the hourly update is scheduled, since every guild fires its own ready event */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public StatsHandler(FlopBot bot) {
+        GUILD_ID = bot.config.get("GUILD_ID", System.getenv("GUILD_ID"));
+        market = bot.market;
+        scheduler = bot.scheduler;
+        renames = new EditCoalescer(bot.scheduler, 5, TimeUnit.MINUTES);
     }
 
     @Override
     public void onGuildReady(@NotNull GuildReadyEvent event) {
-        // Schedule updates every hour (3_600_000 ms)
-        new Timer().schedule(new UpdateTask(event.getJDA(), this), 0, 3_600_000);
+        // Schedule updates every hour
+        if (started.compareAndSet(false, true)) {
+            scheduler.scheduleAtFixedRate(new UpdateTask(event.getJDA(), this), 0, 1, TimeUnit.HOURS);
+        }
     }
 
-    private static class UpdateTask extends TimerTask {
+    private static class UpdateTask implements Runnable {
         private final JDA jda;
         private final StatsHandler statsHandler;
-        private final OkHttpClient httpClient = new OkHttpClient();
 
         public UpdateTask(JDA jda, StatsHandler statsHandler) {
             this.jda = jda;
@@ -69,22 +78,15 @@ public class StatsHandler extends ListenerAdapter {
             Guild guild = jda.getGuildById(statsHandler.GUILD_ID);
             if (guild == null) return;
 
-            try {
-                // Fetch the USD quote object once
-                JSONObject usdQuote = fetchUsdQuote();
-
-                double price     = usdQuote.getDouble("price");
-                double volume24h = usdQuote.getDouble("volume_24h");
-
-                // Get circulating supply from your explorer
-                double supply    = fetchMoneySupply();
-
-                // Compute market cap
-                double marketCap = price * supply;
-
-                String priceStr = DECIMAL_FORMAT.format(price);
-                String volStr   = formatWithSuffix(volume24h);
-                String mcStr    = formatWithSuffix(marketCap);
+            // Use the latest market data, which the market data service keeps refreshed
+            statsHandler.market.get().whenComplete((market, error) -> {
+                if (error != null) {
+                    LOGGER.log(Level.SEVERE, "Error updating channels", error);
+                    return;
+                }
+                String priceStr = DECIMAL_FORMAT.format(market.getPrice());
+                String volStr   = formatWithSuffix(market.getVolume24h());
+                String mcStr    = formatWithSuffix(market.getMarketCap());
 
                 int memberCount = guild.getMemberCount();
 
@@ -93,47 +95,7 @@ public class StatsHandler extends ListenerAdapter {
                 updateChannel(guild, FLOP_PRICE_CHANNEL_PREFIX, FLOP_PRICE_CHANNEL_PREFIX + priceStr);
                 updateChannel(guild, FLOP_VOL_CHANNEL_PREFIX,   FLOP_VOL_CHANNEL_PREFIX   + volStr);
                 updateChannel(guild, FLOP_MC_CHANNEL_PREFIX,    FLOP_MC_CHANNEL_PREFIX    + mcStr);
-
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Error updating channels", e);
-            }
-        }
-
-        private double fetchMoneySupply() throws IOException {
-            Request req = new Request.Builder()
-                    .url(SUPPLY_URL)
-                    .header("User-Agent", "FlopBot/1.0")
-                    .build();
-
-            try (Response resp = httpClient.newCall(req).execute()) {
-                if (!resp.isSuccessful()) {
-                    LOGGER.warning("Explorer API error: " + resp);
-                    throw new IOException("Unexpected explorer response " + resp);
-                }
-                // The endpoint returns the supply as a plain number string
-                String body = resp.body().string().trim();
-                return Double.parseDouble(body);
-            }
-        }
-
-        /**
-         * Fetches the USD quote object from CoinPaprika.
-         */
-        private JSONObject fetchUsdQuote() throws IOException {
-            String url = "https://api.coinpaprika.com/v1/tickers/" + COIN_PAPRIKA_ID;
-            Request request = new Request.Builder()
-                    .url(url)
-                    .header("User-Agent", "FlopBot/1.0")
-                    .build();
-
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    LOGGER.warning("CoinPaprika API error: " + response);
-                    throw new IOException("Unexpected response " + response);
-                }
-                JSONObject json = new JSONObject(response.body().string());
-                return json.getJSONObject("quotes").getJSONObject("USD");
-            }
+            });
         }
 
         /**
@@ -143,7 +105,7 @@ public class StatsHandler extends ListenerAdapter {
             for (VoiceChannel channel : guild.getVoiceChannels()) {
                 if (channel.getName().startsWith(prefix)) {
                     if (!channel.getName().equals(newName)) {
-                        channel.getManager().setName(newName).queue();
+                        statsHandler.renames.submit(channel.getIdLong(), channel.getManager().setName(newName));
                     }
                     return;
                 }
@@ -1,111 +1,231 @@
 package flopbot.handlers;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.Updates;
 import flopbot.FlopBot;
+import flopbot.data.Ledger;
+import flopbot.data.WalletWriteBehind;
+import flopbot.data.cache.LedgerEntry;
 import flopbot.data.cache.Wallet;
-import okhttp3.*;
-import org.json.JSONObject;
+import flopbot.data.cache.WalletCache;
+import flopbot.util.StripedLock;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class WalletHandler {
 
-    private final OkHttpClient client;
+    /** Returned by {@link #removeCoins(long, long, LedgerEntry.Reason)} when the wallet can't cover the debit */
+    public static final long INSUFFICIENT_FUNDS = -1;
+
+    private static final FindOneAndUpdateOptions UPSERT_AND_RETURN = new FindOneAndUpdateOptions()
+            .upsert(true)
+            .returnDocument(ReturnDocument.AFTER);
+    private static final FindOneAndUpdateOptions UPSERT_AND_RETURN_OLD = new FindOneAndUpdateOptions()
+            .upsert(true)
+            .returnDocument(ReturnDocument.BEFORE);
+    private static final FindOneAndUpdateOptions RETURN_UPDATED = new FindOneAndUpdateOptions()
+            .returnDocument(ReturnDocument.AFTER);
+
     private final FlopBot bot;
 
-    // Caching fields for coin rate
-    private double cachedRate = 0.0;
-    private long lastRateUpdate = 0;
+    // Write-through balance cache, plus striped locks so cache updates for a user land in the same order as their writes
+    private final WalletCache cache;
+    private final StripedLock locks;
 
-    // 1 hour in milliseconds
-    private static final long RATE_UPDATE_INTERVAL = 60 * 60 * 1000;
+    // Batches balance changes in memory when WALLET_WRITE_BEHIND is enabled, otherwise null
+    private final WalletWriteBehind writeBehind;
+
+    // Append-only record of every balance change
+    private final Ledger ledger;
 
     public WalletHandler(FlopBot bot) {
         this.bot = bot;
-        this.client = new OkHttpClient();
+        this.cache = new WalletCache(
+                bot.getConfigInt("WALLET_CACHE_SIZE", 10_000),
+                bot.getConfigInt("WALLET_CACHE_IDLE_MINUTES", 30),
+                TimeUnit.MINUTES);
+        this.locks = new StripedLock(64);
+        this.writeBehind = Boolean.parseBoolean(bot.config.get("WALLET_WRITE_BEHIND", System.getenv("WALLET_WRITE_BEHIND")))
+                ? startWriteBehind(bot)
+                : null;
+        this.ledger = new Ledger(
+                bot.database,
+                this::getBalance,
+                bot.getConfigInt("LEDGER_FLUSH_INTERVAL_MS", 1000),
+                bot.getConfigInt("LEDGER_BATCH_SIZE", 500),
+                bot.getConfigInt("LEDGER_COMPACTION_MINUTES", 60),
+                bot.scheduler);
+        Runtime.getRuntime().addShutdownHook(new Thread(ledger::close, "ledger-flush-on-exit"));
     }
 
-    private Wallet getWallet(long userID) {
-        Wallet wallet = bot.database.wallets.find(Filters.eq("user", userID)).first();
-        if (wallet == null) {
-            return createWallet(userID);
+    private WalletWriteBehind startWriteBehind(FlopBot bot) {
+        String directory = bot.config.get("WALLET_JOURNAL_DIR", System.getenv("WALLET_JOURNAL_DIR"));
+        try {
+            WalletWriteBehind writeBehind = new WalletWriteBehind(
+                    bot.database.wallets,
+                    cache,
+                    locks,
+                    Path.of(directory != null ? directory : "data"),
+                    bot.getConfigInt("WALLET_FLUSH_INTERVAL_MS", 1000),
+                    bot.getConfigInt("WALLET_FLUSH_OPS", 500),
+                    bot.scheduler);
+            Runtime.getRuntime().addShutdownHook(new Thread(writeBehind::close, "wallet-flush-on-exit"));
+            return writeBehind;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open wallet journal", e);
         }
-        return wallet;
     }
 
-    private Wallet createWallet(long userID) {
-        Wallet wallet = new Wallet(userID);
-        bot.database.wallets.insertOne(wallet);
-        return wallet;
+    private ReentrantLock lockFor(long userID) {
+        return locks.forId(userID);
     }
 
+    /**
+     * Gets the balance of a user's wallet.
+     *
+     * @param userID the ID of the user.
+     * @return the wallet balance, or 0 if the user has no wallet yet.
+     */
     public long getBalance(long userID) {
-        return getWallet(userID).getBalance();
-    }
-
-    public void sendCoins(long userID, long amount) {
-        getWallet(userID);
-        bot.database.wallets.updateOne(
-                Filters.eq("user", userID),
-                Updates.inc("balance", amount)
-        );
-    }
-
-    public void setBalance(long userID, long newBalance) {
-        getWallet(userID);
-        bot.database.wallets.updateOne(
-                Filters.eq("user", userID),
-                Updates.set("balance", newBalance)
-        );
+        long cached = cache.get(userID);
+        if (cached != WalletCache.MISSING) {
+            return cached;
+        }
+        ReentrantLock lock = lockFor(userID);
+        lock.lock();
+        try {
+            if (writeBehind != null) {
+                long pending = writeBehind.peek(userID);
+                if (pending != WalletCache.MISSING) return pending;
+            }
+            Wallet wallet = bot.database.wallets.find(Filters.eq("user", userID)).first();
+            long balance = (wallet != null) ? wallet.getBalance() : 0;
+            cache.put(userID, balance);
+            return balance;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public void removeCoins(long userID, long amount) {
-        setBalance(userID, getWallet(userID).getBalance() - amount);
+    /**
+     * Adds coins to a user's wallet, creating the wallet if it doesn't exist.
+     *
+     * @param userID the ID of the user.
+     * @param amount the amount of coins to add.
+     * @param reason why the coins are being added, recorded in the ledger.
+     * @return the new wallet balance.
+     */
+    public long sendCoins(long userID, long amount, LedgerEntry.Reason reason) {
+        long balance;
+        if (writeBehind != null) {
+            balance = writeBehind.apply(userID, amount, false);
+        } else {
+            ReentrantLock lock = lockFor(userID);
+            lock.lock();
+            try {
+                Wallet wallet = bot.database.wallets.findOneAndUpdate(
+                        Filters.eq("user", userID),
+                        Updates.inc("balance", amount),
+                        UPSERT_AND_RETURN
+                );
+                cache.put(userID, wallet.getBalance());
+                balance = wallet.getBalance();
+            } finally {
+                lock.unlock();
+            }
+        }
+        ledger.record(userID, amount, balance, reason);
+        return balance;
     }
 
     /**
-     * Returns the wallet balance in dollars.
-     * Updates the coin rate from the API if more than 10 minutes have passed since the last update.
+     * Overwrites the balance of a user's wallet, creating the wallet if it doesn't exist.
      *
-     * @param balance the wallet balance (in FLOP)
-     * @return the dollar value of the balance
-     * @throws IOException if the API call fails
+     * @param userID the ID of the user.
+     * @param newBalance the new wallet balance.
+     * @param reason why the balance is being overwritten, recorded in the ledger.
+     * @return the new wallet balance.
      */
-    public double getValueInDollars(double balance) throws IOException {
-        long now = System.currentTimeMillis();
-        if (cachedRate == 0.0 || (now - lastRateUpdate) >= RATE_UPDATE_INTERVAL) {
-            updateCoinRate();
-            lastRateUpdate = now;
+    public long setBalance(long userID, long newBalance, LedgerEntry.Reason reason) {
+        if (writeBehind != null) {
+            long delta = writeBehind.set(userID, newBalance);
+            ledger.record(userID, delta, newBalance, reason);
+            return newBalance;
+        }
+        ReentrantLock lock = lockFor(userID);
+        lock.lock();
+        try {
+            Wallet wallet = bot.database.wallets.findOneAndUpdate(
+                    Filters.eq("user", userID),
+                    Updates.set("balance", newBalance),
+                    UPSERT_AND_RETURN_OLD
+            );
+            long oldBalance = (wallet != null) ? wallet.getBalance() : 0;
+            cache.put(userID, newBalance);
+            ledger.record(userID, newBalance - oldBalance, newBalance, reason);
+            return newBalance;
+        } finally {
+            lock.unlock();
         }
-        return cachedRate * balance;
     }
 
     /**
-     * Fetches the current coin rate from the API and updates the cachedRate field.
+     * Removes coins from a user's wallet in a single atomic update.
+     * The update only matches if the wallet holds at least the amount being removed,
+     * so concurrent bets can never overdraw a wallet or lose each other's updates.
+     * Debits that the cached balance can't cover are rejected without a round trip.
      *
-     * @throws IOException if there is an error during the API call.
+     * @param userID the ID of the user.
+     * @param amount the amount of coins to remove.
+     * @param reason why the coins are being removed, recorded in the ledger.
+     * @return the new wallet balance, or {@link #INSUFFICIENT_FUNDS} if the wallet can't cover it.
      */
-    private void updateCoinRate() throws IOException {
-        String url = "https://api.livecoinwatch.com/coins/single";
-        JSONObject payload = new JSONObject()
-                .put("currency", "USD")
-                .put("code", "FLOP")
-                .put("meta", true);
-
-        RequestBody body = RequestBody.create(payload.toString(), MediaType.parse("application/json"));
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("x-api-key", FlopBot.LIVECOINWATCH_API_KEY)
-                .post(body)
-                .build();
-
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Error while trying to fetch coin price");
+    public long removeCoins(long userID, long amount, LedgerEntry.Reason reason) {
+        long balance = debit(userID, amount);
+        if (balance != INSUFFICIENT_FUNDS) {
+            ledger.record(userID, -amount, balance, reason);
+        }
+        return balance;
+    }
+
+    private long debit(long userID, long amount) {
+        if (writeBehind != null) {
+            long balance = writeBehind.apply(userID, -amount, true);
+            return (balance == WalletWriteBehind.REJECTED) ? INSUFFICIENT_FUNDS : balance;
+        }
+        ReentrantLock lock = lockFor(userID);
+        lock.lock();
+        try {
+            long cached = cache.get(userID);
+            if (cached != WalletCache.MISSING && cached < amount) {
+                return INSUFFICIENT_FUNDS;
             }
-            JSONObject json = new JSONObject(response.body().string());
-            cachedRate = json.optDouble("rate", 0.0);
+            Wallet wallet = bot.database.wallets.findOneAndUpdate(
+                    Filters.and(Filters.eq("user", userID), Filters.gte("balance", amount)),
+                    Updates.inc("balance", -amount),
+                    RETURN_UPDATED
+            );
+            if (wallet == null) {
+                cache.invalidate(userID);
+                return INSUFFICIENT_FUNDS;
+            }
+            cache.put(userID, wallet.getBalance());
+            return wallet.getBalance();
+        } finally {
+            lock.unlock();
         }
     }
+
+    /**
+     * @return the in-memory balance cache, for reading its hit/miss metrics.
+     */
+    public WalletCache getCache() {
+        return cache;
+    }
 }
@@ -0,0 +1,99 @@
+package flopbot.market;
+
+import flopbot.util.AsyncCache;
+import flopbot.util.HttpFutures;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached access to the CoinPaprika API.
+ * Symbol lookups come from the {@link CoinSymbolIndex}, with the search API as a fallback for symbols it doesn't have.
+ * Coin IDs found by search and coin metadata rarely change and are kept for hours, while ticker quotes
+ * expire after a minute. Every cache shares in-flight requests between identical lookups.
+ */
+public class CoinPaprikaClient {
+
+    private static final String API_URL = "https://api.coinpaprika.com/v1/";
+
+    private final OkHttpClient client;
+    private final CoinSymbolIndex symbols;
+
+    /**
+     * Ticker symbol to coin ID. Symbols that don't exist load as an empty ID, which isn't kept,
+     * so newly listed coins are found right away and junk input can't fill the cache
+     */
+    private final AsyncCache<String, String> coinIds = new AsyncCache<>(2_000, 12, TimeUnit.HOURS, id -> !id.isEmpty());
+    private final AsyncCache<String, JSONObject> tickers = new AsyncCache<>(500, 60, TimeUnit.SECONDS);
+    private final AsyncCache<String, JSONObject> coins = new AsyncCache<>(500, 12, TimeUnit.HOURS);
+
+    /**
+     * @param client the HTTP client to send requests with.
+     * @param symbols the preloaded symbol index, used instead of the search API once it is loaded.
+     */
+    public CoinPaprikaClient(OkHttpClient client, CoinSymbolIndex symbols) {
+        this.client = client;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Finds the CoinPaprika ID of a coin by its ticker symbol.
+     * Answered from the symbol index without a network call when it has the symbol. Symbols it doesn't
+     * have, such as coins listed since its last refresh, or any symbol before it loads, go to the search API.
+     *
+     * @param symbol the ticker symbol, in any case.
+     * @return a future that completes with the coin ID, or null if no coin has that symbol.
+     */
+    public CompletableFuture<String> findCoinId(String symbol) {
+        if (symbols.isLoaded()) {
+            String id = symbols.getCoinId(symbol);
+            if (id != null) return CompletableFuture.completedFuture(id);
+        }
+        return coinIds.get(symbol.toUpperCase(), this::search)
+                .thenApply(id -> id.isEmpty() ? null : id);
+    }
+
+    /**
+     * @param coinId the CoinPaprika ID of a coin.
+     * @return a future that completes with the coin's ticker, including its USD quote.
+     */
+    public CompletableFuture<JSONObject> getTicker(String coinId) {
+        return tickers.get(coinId, id -> HttpFutures.get(client, API_URL + "tickers/" + id).thenApply(JSONObject::new));
+    }
+
+    /**
+     * @param coinId the CoinPaprika ID of a coin.
+     * @return a future that completes with the coin's metadata, such as its logo and links.
+     */
+    public CompletableFuture<JSONObject> getCoin(String coinId) {
+        return coins.get(coinId, id -> HttpFutures.get(client, API_URL + "coins/" + id).thenApply(JSONObject::new));
+    }
+
+    private CompletableFuture<String> search(String symbol) {
+        String url = HttpUrl.get(API_URL).newBuilder()
+                .addPathSegment("search")
+                .addQueryParameter("c", "currencies")
+                .addQueryParameter("q", symbol)
+                .build()
+                .toString();
+        return HttpFutures.get(client, url).thenApply(body -> {
+            JSONArray currencies = new JSONObject(body.trim()).getJSONArray("currencies");
+            for (int i = 0; i < currencies.length(); i++) {
+                JSONObject coin = currencies.getJSONObject(i);
+                if (coin.getString("symbol").equalsIgnoreCase(symbol)) {
+                    return coin.getString("id");
+                }
+            }
+            return "";
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "CoinPaprikaClient[coinIds=" + coinIds + ", tickers=" + tickers + ", coins=" + coins + "]";
+    }
+}
@@ -0,0 +1,215 @@
+package flopbot.market;
+
+import flopbot.util.HttpFutures;
+import flopbot.util.TaskScheduler;
+import okhttp3.OkHttpClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory index of every CoinPaprika coin by ticker symbol.
+ * The full coin list is downloaded periodically and saved to a local snapshot file, so a restart
+ * can serve lookups immediately from disk. Looking up a symbol is a map probe with no network call,
+ * and the sorted symbol list answers prefix searches for slash-command autocomplete.
+ */
+public class CoinSymbolIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(CoinSymbolIndex.class.getName());
+
+    private static final String COINS_URL = "https://api.coinpaprika.com/v1/coins";
+
+    private final OkHttpClient client;
+    private final Path file;
+
+    /** Latest index, replaced as a whole on each refresh. Empty until the first load */
+    private volatile Index index = Index.EMPTY;
+
+    /**
+     * Loads the snapshot file if there is one, then refreshes the index in the background.
+     *
+     * @param client the HTTP client to download the coin list with.
+     * @param file the snapshot file to load from and save to.
+     * @param scheduler the scheduler to refresh on.
+     * @param refreshHours how often the coin list is downloaded.
+     */
+    public CoinSymbolIndex(OkHttpClient client, Path file, TaskScheduler scheduler, long refreshHours) {
+        this.client = client;
+        this.file = file;
+        long initialDelay = 0;
+        try {
+            if (Files.exists(file)) {
+                index = load(file);
+                LOGGER.info("Loaded " + index.size() + " coin symbols from " + file);
+                // Skip the startup download if the snapshot is still fresh
+                long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+                initialDelay = Math.max(0, TimeUnit.HOURS.toMillis(refreshHours) - age);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load coin symbol snapshot, downloading a new one", e);
+        }
+
+        scheduler.scheduleWithFixedDelay(this::refresh, initialDelay,
+                TimeUnit.HOURS.toMillis(refreshHours), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true once the index has been loaded from disk or downloaded.
+     */
+    public boolean isLoaded() {
+        return index.size() > 0;
+    }
+
+    /**
+     * @param symbol a ticker symbol, in any case.
+     * @return the CoinPaprika ID of the top-ranked coin with that symbol, or null if there is none.
+     */
+    public String getCoinId(String symbol) {
+        Index current = index;
+        Integer i = current.positions.get(symbol.toUpperCase());
+        return (i != null) ? current.ids[i] : null;
+    }
+
+    /**
+     * Finds coins whose symbol starts with a prefix, in symbol order.
+     *
+     * @param prefix the start of a ticker symbol, in any case.
+     * @param limit the maximum number of matches.
+     * @return a list of [symbol, name] pairs.
+     */
+    public List<String[]> search(String prefix, int limit) {
+        Index current = index;
+        String key = prefix.toUpperCase();
+        int i = Arrays.binarySearch(current.symbols, key);
+        if (i < 0) i = -i - 1;
+
+        List<String[]> matches = new ArrayList<>(limit);
+        while (i < current.symbols.length && matches.size() < limit && current.symbols[i].startsWith(key)) {
+            matches.add(new String[]{current.symbols[i], current.names[i]});
+            i++;
+        }
+        return matches;
+    }
+
+    /**
+     * Downloads the full coin list, swaps in the new index, and saves it to the snapshot file.
+     */
+    public void refresh() {
+        try {
+            String body = HttpFutures.get(client, COINS_URL).join();
+            Index fresh = parse(new JSONArray(body));
+            if (fresh.size() == 0) {
+                LOGGER.warning("CoinPaprika returned an empty coin list, keeping the current index");
+                return;
+            }
+            index = fresh;
+            save(fresh);
+            LOGGER.info("Indexed " + fresh.size() + " coin symbols");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to refresh coin symbol index", e);
+        }
+    }
+
+    /**
+     * Keeps the best coin for each symbol: active coins first, then the highest market cap rank.
+     */
+    private static Index parse(JSONArray coins) {
+        Map<String, JSONObject> best = new HashMap<>();
+        for (int i = 0; i < coins.length(); i++) {
+            JSONObject coin = coins.getJSONObject(i);
+            String symbol = coin.optString("symbol", "").toUpperCase();
+            if (symbol.isEmpty() || symbol.indexOf('\t') >= 0) continue;
+            JSONObject current = best.get(symbol);
+            if (current == null || rank(coin) < rank(current)) {
+                best.put(symbol, coin);
+            }
+        }
+
+        String[] symbols = best.keySet().toArray(new String[0]);
+        Arrays.sort(symbols);
+        String[] ids = new String[symbols.length];
+        String[] names = new String[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            JSONObject coin = best.get(symbols[i]);
+            ids[i] = coin.getString("id");
+            names[i] = coin.optString("name", symbols[i]).replace('\t', ' ').replace('\n', ' ');
+        }
+        return new Index(symbols, ids, names);
+    }
+
+    private static long rank(JSONObject coin) {
+        int rank = coin.optInt("rank", 0);
+        long order = (rank > 0) ? rank : Integer.MAX_VALUE;
+        return coin.optBoolean("is_active", false) ? order : order + Integer.MAX_VALUE;
+    }
+
+    /**
+     * Reads a snapshot file of tab-separated symbol, ID, and name lines, sorted by symbol.
+     */
+    private static Index load(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String[] symbols = new String[lines.size()];
+        String[] ids = new String[lines.size()];
+        String[] names = new String[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split("\t", 3);
+            symbols[i] = fields[0];
+            ids[i] = fields[1];
+            names[i] = (fields.length > 2) ? fields[2] : fields[0];
+        }
+        return new Index(symbols, ids, names);
+    }
+
+    private void save(Index index) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "coin-symbols", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < index.symbols.length; i++) {
+                    writer.write(index.symbols[i] + '\t' + index.ids[i] + '\t' + index.names[i]);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save coin symbol snapshot", e);
+        }
+    }
+
+    /**
+     * Immutable index stored as parallel arrays sorted by symbol, with a hash map from symbol to array position.
+     */
+    private static class Index {
+        static final Index EMPTY = new Index(new String[0], new String[0], new String[0]);
+
+        final String[] symbols;
+        final String[] ids;
+        final String[] names;
+        final Map<String, Integer> positions;
+
+        Index(String[] symbols, String[] ids, String[] names) {
+            this.symbols = symbols;
+            this.ids = ids;
+            this.names = names;
+            this.positions = new HashMap<>(symbols.length * 4 / 3 + 1);
+            for (int i = 0; i < symbols.length; i++) {
+                positions.put(symbols[i], i);
+            }
+        }
+
+        int size() {
+            return symbols.length;
+        }
+    }
+}
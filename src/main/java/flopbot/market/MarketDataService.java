@@ -0,0 +1,115 @@
+package flopbot.market;
+
+import flopbot.util.HttpFutures;
+import flopbot.util.TaskScheduler;
+import okhttp3.OkHttpClient;
+import org.json.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single source of FLOP market data for the bot.
+ * A background job refreshes the price from CoinPaprika and the supply from the block explorer,
+ * and publishes each result as an immutable {@link MarketSnapshot}. Readers get the latest snapshot
+ * without waiting on HTTP, concurrent refreshes share one request, and the last good snapshot
+ * keeps being served when an upstream API fails.
+ */
+public class MarketDataService {
+
+    private static final Logger LOGGER = Logger.getLogger(MarketDataService.class.getName());
+
+    /** CoinPaprika coin ID for FLOP */
+    public static final String COIN_PAPRIKA_ID = "flop-flopcoin";
+    public static final String TICKER_URL = "https://api.coinpaprika.com/v1/tickers/" + COIN_PAPRIKA_ID;
+    public static final String SUPPLY_URL = "https://explorer.flopcoin.net/ext/getmoneysupply";
+
+    private final OkHttpClient client;
+
+    /** Latest successful snapshot, or null until the first refresh succeeds */
+    private volatile MarketSnapshot snapshot;
+
+    /** Refresh in progress, shared by every caller that asks for one while it runs */
+    private final AtomicReference<CompletableFuture<MarketSnapshot>> inflight = new AtomicReference<>();
+
+    /**
+     * Starts refreshing market data in the background.
+     *
+     * @param client the HTTP client to fetch with.
+     * @param scheduler the scheduler to refresh on.
+     * @param refreshMinutes how often market data is refreshed.
+     */
+    public MarketDataService(OkHttpClient client, TaskScheduler scheduler, long refreshMinutes) {
+        this.client = client;
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return the latest market data, or null if none has been fetched yet. Never blocks.
+     */
+    public MarketSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the latest market data, joining the first refresh if none has been fetched yet.
+     *
+     * @return a future that completes with market data, or fails if none could ever be fetched.
+     */
+    public CompletableFuture<MarketSnapshot> get() {
+        MarketSnapshot current = snapshot;
+        return (current != null) ? CompletableFuture.completedFuture(current) : refresh();
+    }
+
+    /**
+     * Fetches fresh market data, or joins the refresh that is already running.
+     * If the upstream APIs fail, the future completes with the previous snapshot when there is one.
+     *
+     * @return a future that completes with the newest available market data.
+     */
+    public CompletableFuture<MarketSnapshot> refresh() {
+        CompletableFuture<MarketSnapshot> future = new CompletableFuture<>();
+        CompletableFuture<MarketSnapshot> running = inflight.compareAndExchange(null, future);
+        if (running != null) {
+            return running;
+        }
+
+        CompletableFuture<JSONObject> quote = HttpFutures.get(client, TICKER_URL)
+                .thenApply(body -> new JSONObject(body).getJSONObject("quotes").getJSONObject("USD"));
+        CompletableFuture<Double> supply = HttpFutures.get(client, SUPPLY_URL)
+                .thenApply(body -> Double.parseDouble(body.trim()));
+
+        quote.thenCombine(supply.handle((value, error) -> {
+            // The explorer is less reliable than CoinPaprika, so keep the last known supply if it's down
+            if (error == null) return value;
+            MarketSnapshot previous = snapshot;
+            if (previous == null) throw new IllegalStateException("Failed to fetch coin supply", error);
+            LOGGER.log(Level.WARNING, "Failed to fetch coin supply, using last known value", error);
+            return previous.getSupply();
+        }), (usd, circulating) -> new MarketSnapshot(
+                usd.getDouble("price"),
+                usd.optDouble("volume_24h", 0.0),
+                circulating,
+                System.currentTimeMillis()
+        )).whenComplete((fresh, error) -> {
+            if (error == null) {
+                snapshot = fresh;
+                inflight.set(null);
+                future.complete(fresh);
+                return;
+            }
+            inflight.set(null);
+            MarketSnapshot stale = snapshot;
+            LOGGER.log(Level.WARNING, "Failed to refresh market data" + (stale != null ? ", serving stale data" : ""), error);
+            if (stale != null) {
+                future.complete(stale);
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,53 @@
+package flopbot.market;
+
+/**
+ * Immutable view of FLOP market data at one point in time.
+ */
+public final class MarketSnapshot {
+
+    private final double price;
+    private final double volume24h;
+    private final double supply;
+    private final long time;
+
+    /**
+     * @param price the price of one FLOP in USD.
+     * @param volume24h the trading volume over the last 24 hours in USD.
+     * @param supply the circulating supply of FLOP.
+     * @param time when the data was fetched, in epoch milliseconds.
+     */
+    public MarketSnapshot(double price, double volume24h, double supply, long time) {
+        this.price = price;
+        this.volume24h = volume24h;
+        this.supply = supply;
+        this.time = time;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getVolume24h() {
+        return volume24h;
+    }
+
+    public double getSupply() {
+        return supply;
+    }
+
+    public double getMarketCap() {
+        return price * supply;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @param amount an amount of FLOP.
+     * @return the value of the amount in USD.
+     */
+    public double toUsd(double amount) {
+        return price * amount;
+    }
+}
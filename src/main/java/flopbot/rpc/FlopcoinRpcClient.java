@@ -0,0 +1,434 @@
+package flopbot.rpc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import flopbot.data.json.AddressValidation;
+import flopbot.data.json.Block;
+import flopbot.data.json.BlockchainInfo;
+import flopbot.data.json.NetworkInfo;
+import flopbot.data.json.RawTransaction;
+import flopbot.data.json.RpcRequest;
+import flopbot.data.json.RpcResponse;
+import flopbot.data.json.TxOut;
+import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared JSON-RPC client for the Flopcoin Core node.
+ * Keeps a pool of keep-alive connections open to the node and encodes the
+ * Basic auth header once, so each call only pays for serializing its payload.
+ *
+ * @author TechnoVision
+ */
+public class FlopcoinRpcClient {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    /** RPC error codes returned by the node */
+    public static final int METHOD_NOT_FOUND = -32601;
+    public static final int INVALID_ADDRESS_OR_KEY = -5;
+    public static final int WALLET_INSUFFICIENT_FUNDS = -6;
+    public static final int WALLET_UNLOCK_NEEDED = -13;
+
+    private final OkHttpClient client;
+    private final Gson gson;
+    private final HttpUrl url;
+    private final String authHeader;
+    private final AtomicLong nextId;
+
+    /**
+     * Creates a client for the node at the given URL.
+     *
+     * @param url the RPC url of the node.
+     * @param user the RPC username.
+     * @param password the RPC password.
+     */
+    public FlopcoinRpcClient(String url, String user, String password) {
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(8, 5, TimeUnit.MINUTES))
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .build();
+        this.gson = new Gson();
+        this.url = (url != null) ? HttpUrl.parse(url) : null;
+        this.authHeader = Credentials.basic(
+                user != null ? user : "",
+                password != null ? password : "",
+                StandardCharsets.UTF_8);
+        this.nextId = new AtomicLong();
+    }
+
+    /**
+     * Sends an RPC command and deserializes its result.
+     *
+     * @param method the RPC method.
+     * @param resultType the type of the "result" field.
+     * @param params the RPC parameters.
+     * @return the result of the call, or null if the node returned a null result.
+     * @throws RpcException if the call fails or the node returns an error.
+     */
+    public <T> T call(String method, Type resultType, Object... params) throws RpcException {
+        RpcRequest payload = new RpcRequest("1.0", String.valueOf(nextId.incrementAndGet()), method, params);
+        Type responseType = TypeToken.getParameterized(RpcResponse.class, resultType).getType();
+
+        RpcResponse<T> response = parse(post(gson.toJson(payload)), responseType);
+        if (response.error != null) {
+            throw new RpcException(response.error);
+        }
+        return response.result;
+    }
+
+    /**
+     * Sends an RPC command without blocking the calling thread.
+     *
+     * @param method the RPC method.
+     * @param resultType the type of the "result" field.
+     * @param params the RPC parameters.
+     * @return a future that completes with the result of the call, or fails with an {@link RpcException}.
+     */
+    public <T> CompletableFuture<T> callAsync(String method, Type resultType, Object... params) {
+        RpcRequest payload = new RpcRequest("1.0", String.valueOf(nextId.incrementAndGet()), method, params);
+        Type responseType = TypeToken.getParameterized(RpcResponse.class, resultType).getType();
+
+        return postAsync(gson.toJson(payload)).thenCompose(body -> {
+            try {
+                RpcResponse<T> response = parse(body, responseType);
+                if (response.error != null) {
+                    return CompletableFuture.failedFuture(new RpcException(response.error));
+                }
+                return CompletableFuture.completedFuture(response.result);
+            } catch (RpcException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Sends many calls of the same RPC method as a single JSON-RPC 2.0 batch,
+     * so they share one HTTP round trip to the node.
+     *
+     * @param method the RPC method.
+     * @param resultType the type of each "result" field.
+     * @param paramsList the parameters for each call, in order.
+     * @return one response per call, in the same order as paramsList. Each response
+     *         carries either its result or its own RPC error.
+     * @throws RpcException if the batch as a whole fails.
+     */
+    public <T> List<RpcResponse<T>> batch(String method, Type resultType, List<Object[]> paramsList) throws RpcException {
+        if (paramsList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long firstId = nextId.getAndAdd(paramsList.size()) + 1;
+        RpcRequest[] payload = new RpcRequest[paramsList.size()];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = new RpcRequest("2.0", String.valueOf(firstId + i), method, paramsList.get(i));
+        }
+        Type responseType = TypeToken.getParameterized(RpcResponse.class, resultType).getType();
+
+        // A failed batch is answered with a single error object instead of an array
+        String body = post(gson.toJson(payload));
+        JsonElement json;
+        try {
+            json = JsonParser.parseString(body);
+        } catch (JsonParseException e) {
+            throw new RpcException("Malformed response from the Flopcoin node", e);
+        }
+        if (!json.isJsonArray()) {
+            RpcResponse<T> response = parse(body, responseType);
+            throw response.error != null ? new RpcException(response.error) : new RpcException("Node rejected the batch request");
+        }
+
+        // Responses may arrive in any order, so match them back up by id
+        List<RpcResponse<T>> responses = new ArrayList<>(Collections.nCopies(payload.length, null));
+        JsonArray array = json.getAsJsonArray();
+        for (JsonElement element : array) {
+            RpcResponse<T> response = gson.fromJson(element, responseType);
+            try {
+                int index = (int) (Long.parseLong(response.id) - firstId);
+                if (index >= 0 && index < payload.length) {
+                    responses.set(index, response);
+                }
+            } catch (NumberFormatException ignored) { }
+        }
+        if (responses.contains(null)) {
+            throw new RpcException("Node returned an incomplete batch response");
+        }
+        return responses;
+    }
+
+    /**
+     * Retrieves the wallet balance of the node.
+     *
+     * @return the current wallet balance.
+     * @throws RpcException if the call fails.
+     */
+    public double getBalance() throws RpcException {
+        Double balance = call("getbalance", Double.class);
+        return balance != null ? balance : 0;
+    }
+
+    /**
+     * Retrieves the wallet balance of the node without blocking.
+     *
+     * @return a future that completes with the current wallet balance.
+     */
+    public CompletableFuture<Double> getBalanceAsync() {
+        return this.<Double>callAsync("getbalance", Double.class)
+                .thenApply(balance -> balance != null ? balance : 0);
+    }
+
+    /**
+     * Looks up an unspent transaction output.
+     *
+     * @param txid the transaction ID.
+     * @param vout the output index.
+     * @return the output, or null if it is spent or does not exist.
+     * @throws RpcException if the call fails.
+     */
+    public TxOut getTxOut(String txid, int vout) throws RpcException {
+        return call("gettxout", TxOut.class, txid, vout);
+    }
+
+    /**
+     * Looks up many unspent transaction outputs in a single batch request.
+     *
+     * @param outpoints pairs of {txid, vout} to look up.
+     * @return the output for each outpoint in the same order, with null for
+     *         outputs that are spent, do not exist, or returned an error.
+     * @throws RpcException if the batch request fails.
+     */
+    public List<TxOut> getTxOuts(List<Object[]> outpoints) throws RpcException {
+        List<RpcResponse<TxOut>> responses = batch("gettxout", TxOut.class, outpoints);
+        List<TxOut> results = new ArrayList<>(responses.size());
+        for (RpcResponse<TxOut> response : responses) {
+            results.add(response.error == null ? response.result : null);
+        }
+        return results;
+    }
+
+    /**
+     * @return the hash of the best block on the node's main chain.
+     * @throws RpcException if the call fails.
+     */
+    public String getBestBlockHash() throws RpcException {
+        return call("getbestblockhash", String.class);
+    }
+
+    /**
+     * @return a future that completes with the node's chain height and difficulty.
+     */
+    public CompletableFuture<BlockchainInfo> getBlockchainInfoAsync() {
+        return callAsync("getblockchaininfo", BlockchainInfo.class);
+    }
+
+    /**
+     * @return a future that completes with the node's version and peer count.
+     */
+    public CompletableFuture<NetworkInfo> getNetworkInfoAsync() {
+        return callAsync("getnetworkinfo", NetworkInfo.class);
+    }
+
+    /**
+     * @return a future that completes with the estimated network hashrate in hashes per second.
+     */
+    public CompletableFuture<Double> getNetworkHashPsAsync() {
+        return callAsync("getnetworkhashps", Double.class);
+    }
+
+    /**
+     * Looks up a block and the IDs of its transactions.
+     *
+     * @param hash the block hash.
+     * @return the block.
+     * @throws RpcException if the call fails or the block is unknown.
+     */
+    public Block getBlock(String hash) throws RpcException {
+        return call("getblock", Block.class, hash, true);
+    }
+
+    /**
+     * Checks whether the node keeps a full transaction index, which {@link #getRawTransactions}
+     * needs to look up transactions outside the node's wallet.
+     *
+     * @return whether the node has -txindex enabled, or null if the node is too old to report its indexes.
+     * @throws RpcException if the call fails.
+     */
+    public Boolean hasTxIndex() throws RpcException {
+        try {
+            Map<?, ?> indexes = call("getindexinfo", Map.class);
+            return indexes != null && indexes.containsKey("txindex");
+        } catch (RpcException e) {
+            if (e.getCode() == METHOD_NOT_FOUND) return null;
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up many transactions in a single batch request.
+     * Requires the node to run with -txindex for transactions outside its wallet.
+     *
+     * @param txids the transaction IDs.
+     * @return the decoded transaction for each ID in the same order.
+     * @throws RpcException if the batch request fails or any transaction can't be found.
+     */
+    public List<RawTransaction> getRawTransactions(List<String> txids) throws RpcException {
+        List<Object[]> params = new ArrayList<>(txids.size());
+        for (String txid : txids) {
+            params.add(new Object[]{txid, 1});
+        }
+        List<RpcResponse<RawTransaction>> responses = batch("getrawtransaction", RawTransaction.class, params);
+        List<RawTransaction> results = new ArrayList<>(responses.size());
+        for (RpcResponse<RawTransaction> response : responses) {
+            if (response.error != null) {
+                throw new RpcException(response.error);
+            }
+            results.add(response.result);
+        }
+        return results;
+    }
+
+    /**
+     * Sends coins from the node's wallet to an address.
+     *
+     * @param address the destination wallet address.
+     * @param amount the amount of FLOP to send.
+     * @return the transaction ID returned by the node.
+     * @throws RpcException if the call fails.
+     */
+    public String sendToAddress(String address, double amount) throws RpcException {
+        return call("sendtoaddress", String.class, address, amount);
+    }
+
+    /**
+     * Sends coins from the node's wallet to an address without blocking.
+     *
+     * @param address the destination wallet address.
+     * @param amount the amount of FLOP to send.
+     * @return a future that completes with the transaction ID returned by the node.
+     */
+    public CompletableFuture<String> sendToAddressAsync(String address, double amount) {
+        return callAsync("sendtoaddress", String.class, address, amount);
+    }
+
+    /**
+     * Sends coins from the node's wallet to many addresses in a single transaction.
+     *
+     * @param amounts the amount of FLOP to send to each address.
+     * @return the transaction ID returned by the node.
+     * @throws RpcException if the call fails.
+     */
+    public String sendMany(Map<String, BigDecimal> amounts) throws RpcException {
+        return call("sendmany", String.class, "", amounts);
+    }
+
+    /**
+     * Validates an address using the node's validateaddress command.
+     *
+     * @param address the wallet address to validate.
+     * @return true if the address is valid; false otherwise.
+     * @throws RpcException if the call fails.
+     */
+    public boolean validateAddress(String address) throws RpcException {
+        AddressValidation result = call("validateaddress", AddressValidation.class, address);
+        return result != null && result.isvalid;
+    }
+
+    /**
+     * Validates an address without blocking.
+     *
+     * @param address the wallet address to validate.
+     * @return a future that completes with true if the address is valid.
+     */
+    public CompletableFuture<Boolean> validateAddressAsync(String address) {
+        return this.<AddressValidation>callAsync("validateaddress", AddressValidation.class, address)
+                .thenApply(result -> result != null && result.isvalid);
+    }
+
+    /**
+     * Posts a JSON payload to the node and returns the raw response body.
+     * The node reports RPC errors with non-2xx status codes, so the body is
+     * returned regardless of status as long as one was sent.
+     */
+    private String post(String json) throws RpcException {
+        try (Response response = client.newCall(request(json)).execute()) {
+            return readBody(response);
+        } catch (IOException e) {
+            throw new RpcException("Failed to reach the Flopcoin node", e);
+        }
+    }
+
+    /**
+     * Posts a JSON payload to the node on OkHttp's dispatcher threads, so no thread waits on the response.
+     */
+    private CompletableFuture<String> postAsync(String json) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Request request;
+        try {
+            request = request(json);
+        } catch (RpcException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                future.completeExceptionally(new RpcException("Failed to reach the Flopcoin node", e));
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    future.complete(readBody(response));
+                } catch (RpcException e) {
+                    future.completeExceptionally(e);
+                } catch (IOException e) {
+                    future.completeExceptionally(new RpcException("Failed to reach the Flopcoin node", e));
+                }
+            }
+        });
+        return future;
+    }
+
+    private Request request(String json) throws RpcException {
+        if (url == null) {
+            throw new RpcException("RPC_URL is not configured");
+        }
+        return new Request.Builder()
+                .url(url)
+                .header("Authorization", authHeader)
+                .post(RequestBody.create(json, JSON))
+                .build();
+    }
+
+    private String readBody(Response response) throws IOException, RpcException {
+        String body = response.body() != null ? response.body().string() : "";
+        if (body.isBlank()) {
+            throw new RpcException("Node returned HTTP " + response.code() + " with an empty body");
+        }
+        return body;
+    }
+
+    private <R> R parse(String body, Type type) throws RpcException {
+        try {
+            R parsed = gson.fromJson(body, type);
+            if (parsed == null) {
+                throw new RpcException("Node returned an empty response");
+            }
+            return parsed;
+        } catch (JsonParseException e) {
+            throw new RpcException("Malformed response from the Flopcoin node", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package flopbot.rpc;
+
+import flopbot.data.json.RpcError;
+
+/**
+ * Thrown when a call to the Flopcoin node fails, either at the
+ * transport level or because the node returned an RPC error.
+ */
+public class RpcException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /** RPC error code returned by the node, or 0 for transport failures */
+    private final int code;
+
+    public RpcException(String message) {
+        super(message);
+        this.code = 0;
+    }
+
+    public RpcException(String message, Throwable cause) {
+        super(message, cause);
+        this.code = 0;
+    }
+
+    public RpcException(RpcError error) {
+        super(error.message != null ? error.message : "Unknown RPC error");
+        this.code = error.code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,144 @@
+package flopbot.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of asynchronously loaded values with a time-to-live.
+ * The future for a load is cached as soon as it starts, so identical concurrent lookups share
+ * one request. Failed loads, and values the cache is told not to keep, are dropped so the next
+ * lookup retries, and the least recently used entries are evicted once the cache is full.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values.
+ */
+public class AsyncCache<K, V> {
+
+    private final Map<K, Entry<V>> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long ttlNanos;
+    private final Predicate<V> cacheable;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of entries to keep.
+     * @param ttl how long a loaded value is served before it is loaded again.
+     * @param unit the unit of ttl.
+     */
+    public AsyncCache(int maxSize, long ttl, TimeUnit unit) {
+        this(maxSize, ttl, unit, value -> true);
+    }
+
+    /**
+     * @param maxSize the maximum number of entries to keep.
+     * @param ttl how long a loaded value is served before it is loaded again.
+     * @param unit the unit of ttl.
+     * @param cacheable whether to keep a loaded value. Rejected values still complete the lookups
+     *                  waiting on them, but aren't served to later ones.
+     */
+    public AsyncCache(int maxSize, long ttl, TimeUnit unit, Predicate<V> cacheable) {
+        int capacity = Math.max(1, maxSize);
+        this.ttlNanos = unit.toNanos(ttl);
+        this.cacheable = cacheable;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached value, or starts loading it if it is missing or expired.
+     *
+     * @param key the key to look up.
+     * @param loader starts loading the value for a key. Called without holding the cache lock.
+     * @return a future that completes with the value.
+     */
+    public CompletableFuture<V> get(K key, Function<K, CompletableFuture<V>> loader) {
+        long now = System.nanoTime();
+        CompletableFuture<V> future;
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            // An entry that is still loading has no expiry yet and is always shared
+            if (entry != null && (!entry.future.isDone() || now - entry.loadedAt < ttlNanos)) {
+                hits.increment();
+                return entry.future;
+            }
+            misses.increment();
+            future = new CompletableFuture<>();
+            entries.put(key, new Entry<>(future, now));
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture<V> load;
+        try {
+            load = loader.apply(key);
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((value, error) -> {
+            lock.lock();
+            try {
+                Entry<V> entry = entries.get(key);
+                if (entry != null && entry.future == future) {
+                    if (error != null || !cacheable.test(value)) {
+                        entries.remove(key);
+                    } else {
+                        entry.loadedAt = System.nanoTime();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AsyncCache[size=%d, hits=%d, misses=%d]", size(), getHits(), getMisses());
+    }
+
+    private static class Entry<V> {
+        final CompletableFuture<V> future;
+        long loadedAt;
+
+        Entry(CompletableFuture<V> future, long loadedAt) {
+            this.future = future;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package flopbot.util;
+
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends message edits and channel updates with at most one request in flight per message or channel.
+ * While a request is in flight, new ones for the same key wait in a single pending slot and a newer
+ * edit replaces an older one, so only the latest state is ever sent and nothing queues up behind a
+ * rate limit. Because each key holds at most one slot in JDA's rate-limit buckets, keys are flushed
+ * as fast as their bucket allows; an optional minimum interval spaces requests further for routes
+ * with long limits, such as channel renames.
+ */
+public class EditCoalescer {
+
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final TaskScheduler scheduler;
+    private final long minIntervalNanos;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param scheduler the scheduler to delay paced requests on.
+     * @param minInterval the least time between the starts of two requests for the same key, or 0.
+     * @param unit the unit of minInterval.
+     */
+    public EditCoalescer(TaskScheduler scheduler, long minInterval, TimeUnit unit) {
+        this.scheduler = scheduler;
+        this.minIntervalNanos = unit.toNanos(minInterval);
+    }
+
+    /**
+     * Sends a request now if nothing is in flight for its key, otherwise makes it the next one to send,
+     * replacing any request still waiting.
+     *
+     * @param key the ID of the message or channel the request changes.
+     * @param action the request. It is not queued until its turn comes.
+     */
+    public void submit(long key, RestAction<?> action) {
+        submitted.increment();
+        while (true) {
+            Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+            synchronized (slot) {
+                // The slot went idle and was removed after we looked it up
+                if (slot.removed) continue;
+                if (slot.busy) {
+                    if (slot.pending != null) {
+                        dropped.increment();
+                    } else {
+                        coalesced.increment();
+                    }
+                    slot.pending = action;
+                    return;
+                }
+                slot.busy = true;
+            }
+            send(key, slot, action);
+            return;
+        }
+    }
+
+    private void send(long key, Slot slot, RestAction<?> action) {
+        long wait = (slot.lastSent + minIntervalNanos) - System.nanoTime();
+        if (slot.lastSent != 0 && wait > 0) {
+            scheduler.schedule(() -> send(key, slot, action), wait, TimeUnit.NANOSECONDS);
+            return;
+        }
+        slot.lastSent = System.nanoTime();
+        sent.increment();
+        action.queue(success -> next(key, slot), error -> {
+            failed.increment();
+            next(key, slot);
+        });
+    }
+
+    /**
+     * Sends the pending request once the one in flight finishes, or releases the key if there is none.
+     */
+    private void next(long key, Slot slot) {
+        RestAction<?> action;
+        synchronized (slot) {
+            action = slot.pending;
+            slot.pending = null;
+            if (action == null) {
+                slot.busy = false;
+                // Keep the slot while pacing, so the next request still waits out the interval
+                if (minIntervalNanos == 0 || System.nanoTime() - slot.lastSent >= minIntervalNanos) {
+                    slot.removed = true;
+                    slots.remove(key, slot);
+                }
+                return;
+            }
+        }
+        send(key, slot, action);
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * @return the number of requests that had to wait behind one already in flight.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of waiting requests replaced by a newer one before they were sent.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EditCoalescer[keys=%d, submitted=%d, sent=%d, coalesced=%d, dropped=%d, failed=%d]",
+                slots.size(), getSubmitted(), getSent(), getCoalesced(), getDropped(), getFailed());
+    }
+
+    /**
+     * Request state for one key. Guarded by its own monitor, except lastSent,
+     * which only the sender of the in-flight request touches.
+     */
+    private static class Slot {
+        boolean busy;
+        boolean removed;
+        RestAction<?> pending;
+        volatile long lastSent;
+    }
+}
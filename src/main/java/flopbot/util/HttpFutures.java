@@ -0,0 +1,59 @@
+package flopbot.util;
+
+import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs OkHttp requests on the client's dispatcher threads and exposes them as futures.
+ */
+public final class HttpFutures {
+
+    private HttpFutures() {}
+
+    /**
+     * Sends a GET request with the bot's user agent.
+     *
+     * @param client the HTTP client to send with.
+     * @param url the URL to fetch.
+     * @return a future that completes with the response body, or fails with an IOException on a non-2xx response.
+     */
+    public static CompletableFuture<String> get(OkHttpClient client, String url) {
+        return send(client, new Request.Builder()
+                .url(url)
+                .header("User-Agent", "FlopBot/1.0")
+                .build());
+    }
+
+    /**
+     * Sends a request without blocking the calling thread.
+     *
+     * @param client the HTTP client to send with.
+     * @param request the request to send.
+     * @return a future that completes with the response body, or fails with an IOException on a non-2xx response.
+     */
+    public static CompletableFuture<String> send(OkHttpClient client, Request request) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        throw new IOException("Unexpected response " + response);
+                    }
+                    future.complete(response.body().string());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,51 @@
+package flopbot.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks that IDs are hashed onto, so work for the same ID is
+ * serialized without allocating a lock per ID.
+ */
+public class StripedLock {
+
+    private final ReentrantLock[] locks;
+
+    /**
+     * @param stripes the number of locks, rounded up to a power of two.
+     */
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(2, stripes) - 1) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @param id the ID to look up.
+     * @return the index of the stripe that guards this ID.
+     */
+    public int stripeOf(long id) {
+        return (int) (id ^ (id >>> 32)) & (locks.length - 1);
+    }
+
+    /**
+     * @param id the ID to look up.
+     * @return the lock that guards this ID.
+     */
+    public ReentrantLock forId(long id) {
+        return locks[stripeOf(id)];
+    }
+
+    /**
+     * @param stripe the index of a stripe.
+     * @return the lock for that stripe.
+     */
+    public ReentrantLock get(int stripe) {
+        return locks[stripe];
+    }
+
+    public int size() {
+        return locks.length;
+    }
+}
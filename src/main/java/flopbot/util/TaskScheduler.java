@@ -0,0 +1,272 @@
+package flopbot.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared scheduler for all delayed and periodic work in the bot.
+ * Tasks are kept in a hashed timing wheel driven by a single platform thread, which only moves
+ * due tasks onto virtual threads to run. Scheduling a task is a queue insert, and the thread count
+ * stays fixed no matter how many timers are pending. A periodic task never overlaps itself: its next
+ * run is scheduled once the current run finishes, and an exception is logged without cancelling it.
+ */
+public class TaskScheduler implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(TaskScheduler.class.getName());
+
+    private final long tickNanos;
+    private final Task[] wheel;
+    private final int mask;
+    private final long startTime;
+
+    /** Tasks waiting to be placed on the wheel by the tick thread */
+    private final Queue<Task> additions = new ConcurrentLinkedQueue<>();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-", 0).factory());
+    private final Thread ticker;
+    private volatile boolean running = true;
+
+    /** Current tick, only touched by the tick thread */
+    private long tick;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Starts the tick thread.
+     *
+     * @param tickMillis the resolution of the timer; tasks run up to one tick after their deadline.
+     * @param wheelSize the number of slots on the wheel, rounded up to a power of two.
+     */
+    public TaskScheduler(long tickMillis, int wheelSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.wheel = new Task[size];
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.ticker = Thread.ofPlatform().name("scheduler").daemon(true).start(this::runTicks);
+    }
+
+    /**
+     * Runs a task once after a delay.
+     *
+     * @param task the task to run.
+     * @param delay how long to wait before running it.
+     * @param unit the unit of delay.
+     * @return a handle for cancelling the task.
+     */
+    public Task schedule(Runnable task, long delay, TimeUnit unit) {
+        return add(new Task(task, System.nanoTime() + unit.toNanos(delay), 0));
+    }
+
+    /**
+     * Runs a task periodically on a fixed schedule. If a run takes longer than the period,
+     * the next run starts as soon as it finishes instead of overlapping it.
+     *
+     * @param task the task to run.
+     * @param initialDelay how long to wait before the first run.
+     * @param period the time between the starts of consecutive runs.
+     * @param unit the unit of initialDelay and period.
+     * @return a handle for cancelling the task.
+     */
+    public Task scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return add(new Task(task, System.nanoTime() + unit.toNanos(initialDelay), Math.max(1, unit.toNanos(period))));
+    }
+
+    /**
+     * Runs a task periodically with a fixed delay between the end of one run and the start of the next.
+     *
+     * @param task the task to run.
+     * @param initialDelay how long to wait before the first run.
+     * @param delay the time between the end of a run and the start of the next.
+     * @param unit the unit of initialDelay and delay.
+     * @return a handle for cancelling the task.
+     */
+    public Task scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        return add(new Task(task, System.nanoTime() + unit.toNanos(initialDelay), -Math.max(1, unit.toNanos(delay))));
+    }
+
+    /**
+     * Runs a task right away on a virtual thread.
+     *
+     * @param task the task to run.
+     */
+    public void execute(Runnable task) {
+        pending.incrementAndGet();
+        dispatch(new Task(task, System.nanoTime(), 0));
+    }
+
+    private Task add(Task task) {
+        pending.incrementAndGet();
+        additions.add(task);
+        return task;
+    }
+
+    private void runTicks() {
+        while (running) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleep);
+                if (!running) return;
+            }
+            placeAdditions();
+            expire((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    /**
+     * Moves newly scheduled tasks onto the wheel, in the slot for the tick their deadline falls in.
+     */
+    private void placeAdditions() {
+        Task task;
+        while ((task = additions.poll()) != null) {
+            if (task.cancelled) {
+                pending.decrementAndGet();
+                continue;
+            }
+            long due = Math.max((task.deadline - startTime) / tickNanos, tick);
+            task.rounds = (due - tick) / wheel.length;
+            int slot = (int) (due & mask);
+            task.next = wheel[slot];
+            wheel[slot] = task;
+        }
+    }
+
+    /**
+     * Runs the tasks in a slot that are due this rotation, and keeps the rest for a later rotation.
+     */
+    private void expire(int slot) {
+        Task task = wheel[slot];
+        Task kept = null;
+        while (task != null) {
+            Task next = task.next;
+            task.next = null;
+            if (task.cancelled) {
+                pending.decrementAndGet();
+            } else if (task.rounds > 0) {
+                task.rounds--;
+                task.next = kept;
+                kept = task;
+            } else {
+                dispatch(task);
+            }
+            task = next;
+        }
+        wheel[slot] = kept;
+    }
+
+    private void dispatch(Task task) {
+        pending.decrementAndGet();
+        active.incrementAndGet();
+        maxLagNanos.accumulate(System.nanoTime() - task.deadline);
+        workers.execute(() -> {
+            try {
+                task.runnable.run();
+                completed.increment();
+            } catch (Throwable e) {
+                failed.increment();
+                LOGGER.log(Level.WARNING, "Scheduled task failed", e);
+            } finally {
+                active.decrementAndGet();
+            }
+            if (task.period != 0 && !task.cancelled && running) {
+                task.deadline = (task.period > 0)
+                        ? Math.max(task.deadline + task.period, System.nanoTime())
+                        : System.nanoTime() - task.period;
+                add(task);
+            }
+        });
+    }
+
+    /**
+     * @return the number of tasks waiting for their deadline.
+     */
+    public int getPendingTasks() {
+        return pending.get();
+    }
+
+    /**
+     * @return the number of tasks running right now.
+     */
+    public int getActiveTasks() {
+        return active.get();
+    }
+
+    public long getCompletedTasks() {
+        return completed.sum();
+    }
+
+    public long getFailedTasks() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the longest any task has waited past its deadline before being handed to a thread, in milliseconds.
+     */
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaskScheduler[pending=%d, active=%d, completed=%d, failed=%d, maxLagMs=%d]",
+                getPendingTasks(), getActiveTasks(), getCompletedTasks(), getFailedTasks(), getMaxLagMillis());
+    }
+
+    /**
+     * Stops the tick thread. Tasks that are already running are allowed to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+        workers.shutdown();
+    }
+
+    /**
+     * Handle for a scheduled task.
+     */
+    public static final class Task {
+        final Runnable runnable;
+
+        /** Zero for a one-shot task, positive for a fixed rate, negative for a fixed delay */
+        final long period;
+        long deadline;
+
+        /** Rotations left before the task is due, and the next task in the same slot. Tick thread only */
+        long rounds;
+        Task next;
+
+        private volatile boolean cancelled;
+
+        Task(Runnable runnable, long deadline, long period) {
+            this.runnable = runnable;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /**
+         * Stops the task from running again. A run that already started is not interrupted.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
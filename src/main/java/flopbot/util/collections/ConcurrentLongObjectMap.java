@@ -0,0 +1,162 @@
+package flopbot.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe hash map from primitive long keys to objects.
+ * Keys are spread over a fixed number of {@link LongObjectHashMap} segments, each guarded by its own lock,
+ * so threads working on different IDs rarely contend and no key is ever boxed.
+ *
+ * @param <V> the type of values stored in the map.
+ */
+public class ConcurrentLongObjectMap<V> {
+
+    private final LongObjectHashMap<V>[] segments;
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public ConcurrentLongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * @param segments the number of independently locked segments, rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongObjectMap(int segments) {
+        int size = Integer.highestOneBit(Math.max(2, segments) - 1) << 1;
+        this.segments = (LongObjectHashMap<V>[]) new LongObjectHashMap<?>[size];
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.segments[i] = new LongObjectHashMap<>();
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    private int segmentOf(long key) {
+        // Use the high bits, since each segment's own table indexes with the low bits of the same hash
+        return (LongObjectHashMap.hash(key) >>> 16) & mask;
+    }
+
+    public V get(long key) {
+        int s = segmentOf(key);
+        locks[s].lock();
+        try {
+            return segments[s].get(key);
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps a key to a value.
+     *
+     * @param key the key.
+     * @param value the value, which must not be null.
+     * @return the previous value for this key, or null if there was none.
+     */
+    public V put(long key, V value) {
+        int s = segmentOf(key);
+        locks[s].lock();
+        try {
+            return segments[s].put(key, value);
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    /**
+     * Maps a key to a value unless the key is already present.
+     *
+     * @param key the key.
+     * @param value the value, which must not be null.
+     * @return the existing value for this key, or null if the value was added.
+     */
+    public V putIfAbsent(long key, V value) {
+        int s = segmentOf(key);
+        locks[s].lock();
+        try {
+            V current = segments[s].get(key);
+            if (current == null) {
+                segments[s].put(key, value);
+            }
+            return current;
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key the key.
+     * @return the removed value, or null if the key was not present.
+     */
+    public V remove(long key) {
+        int s = segmentOf(key);
+        locks[s].lock();
+        try {
+            return segments[s].remove(key);
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    /**
+     * Removes a key only if it is mapped to the given value.
+     *
+     * @param key the key.
+     * @param value the value expected for the key, compared by identity.
+     * @return true if the entry was removed.
+     */
+    public boolean remove(long key, V value) {
+        int s = segmentOf(key);
+        locks[s].lock();
+        try {
+            if (segments[s].get(key) != value) return false;
+            segments[s].remove(key);
+            return true;
+        } finally {
+            locks[s].unlock();
+        }
+    }
+
+    /**
+     * Copies every value in the map. Each segment is copied atomically, but the map as a whole is not,
+     * so entries changed while the copy is taken may or may not be included.
+     *
+     * @return a new list of the values.
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (int s = 0; s < segments.length; s++) {
+            locks[s].lock();
+            try {
+                segments[s].forEach((key, value) -> values.add(value));
+            } finally {
+                locks[s].unlock();
+            }
+        }
+        return values;
+    }
+
+    public int size() {
+        int size = 0;
+        for (int s = 0; s < segments.length; s++) {
+            locks[s].lock();
+            try {
+                size += segments[s].size();
+            } finally {
+                locks[s].unlock();
+            }
+        }
+        return size;
+    }
+}
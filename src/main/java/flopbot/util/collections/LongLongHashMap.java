@@ -0,0 +1,195 @@
+package flopbot.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to primitive long values.
+ * Stores each entry in two parallel arrays with no boxing or per-entry objects.
+ * Key 0 marks an empty slot and cannot be stored; Discord IDs are never 0.
+ * Not thread-safe; callers must synchronize access.
+ */
+public class LongLongHashMap {
+
+    /** Returned by {@link #get(long)} and {@link #remove(long)} when a key is not present */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongLongHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of entries the map should hold without resizing.
+     */
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int indexOf(long key) {
+        int i = LongObjectHashMap.hash(key) & mask;
+        while (keys[i] != 0) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key the key.
+     * @return the value for this key, or {@link #MISSING} if the key is not present.
+     */
+    public long get(long key) {
+        int i = indexOf(key);
+        return (i < 0) ? MISSING : values[i];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Maps a key to a value.
+     *
+     * @param key the key, which must not be 0.
+     * @param value the value.
+     * @return the previous value for this key, or {@link #MISSING} if there was none.
+     */
+    public long put(long key, long value) {
+        if (key == 0) throw new IllegalArgumentException("key 0 is reserved");
+        int i = LongObjectHashMap.hash(key) & mask;
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                long old = values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key the key.
+     * @return the removed value, or {@link #MISSING} if the key was not present.
+     */
+    public long remove(long key) {
+        int i = indexOf(key);
+        if (i < 0) return MISSING;
+        long old = values[i];
+        shiftDelete(i);
+        size--;
+        return old;
+    }
+
+    /**
+     * Removes every entry whose value is below a threshold, e.g. every expired timestamp.
+     *
+     * @param threshold the smallest value to keep.
+     * @return the number of entries removed.
+     */
+    public int removeValuesBelow(long threshold) {
+        int removed = 0;
+        int i = 0;
+        while (i < keys.length) {
+            // A delete can shift a later entry into this slot, so check it again before moving on.
+            // Entries shifted across the end of the table were already visited and kept.
+            if (keys[i] != 0 && values[i] < threshold) {
+                shiftDelete(i);
+                size--;
+                removed++;
+            } else {
+                i++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes the entry at a slot and shifts back any following entries in
+     * its probe chain, so lookups never need tombstones.
+     */
+    private void shiftDelete(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (keys[i] == 0) break;
+            int home = LongObjectHashMap.hash(keys[i]) & mask;
+            boolean between = (hole <= i) ? (hole < home && home <= i) : (hole < home || home <= i);
+            if (!between) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = LongObjectHashMap.hash(oldKeys[i]) & mask;
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Calls an action for every entry in the map. The map must not be modified during iteration.
+     */
+    public void forEach(LongLongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @FunctionalInterface
+    public interface LongLongConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,184 @@
+package flopbot.util.collections;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Open-addressing hash map from primitive long keys to objects.
+ * Avoids boxing Discord IDs into {@code Long} keys and the per-entry node objects of {@code HashMap}.
+ * Not thread-safe; callers must synchronize access.
+ *
+ * @param <V> the type of values stored in the map.
+ */
+public class LongObjectHashMap<V> {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongObjectHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of entries the map should hold without resizing.
+     */
+    public LongObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Spreads the bits of a key so sequential snowflake IDs don't cluster.
+     */
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int indexOf(long key) {
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = indexOf(key);
+        return (i < 0) ? null : (V) values[i];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Maps a key to a value.
+     *
+     * @param key the key.
+     * @param value the value, which must not be null.
+     * @return the previous value for this key, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new NullPointerException("value");
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key the key.
+     * @return the removed value, or null if the key was not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = indexOf(key);
+        if (i < 0) return null;
+        V old = (V) values[i];
+        shiftDelete(i);
+        size--;
+        return old;
+    }
+
+    /**
+     * Deletes the entry at a slot and shifts back any following entries in
+     * its probe chain, so lookups never need tombstones.
+     */
+    private void shiftDelete(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) break;
+            int home = hash(keys[i]) & mask;
+            boolean between = (hole <= i) ? (hole < home && home <= i) : (hole < home || home <= i);
+            if (!between) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int j = hash(oldKeys[i]) & mask;
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Calls an action for every entry in the map. The map must not be modified during iteration.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(LongObjectConsumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Like {@link BiConsumer} but takes a primitive long key.
+     */
+    @FunctionalInterface
+    public interface LongObjectConsumer<V> {
+        void accept(long key, V value);
+    }
+}
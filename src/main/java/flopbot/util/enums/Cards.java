@@ -66,6 +66,11 @@ public enum Cards {
     public final String emoji;
     public final boolean isAce;
 
+    /** The emoji followed by a space, as printed in a hand */
+    public final String text;
+
+    private static final Cards[] VALUES = values();
+
     /**
      * Constructor for making non-ace playing card
      * @param value the value that this card holds.
@@ -75,6 +80,7 @@ public enum Cards {
         this.value = value;
         this.emoji = emoji;
         this.isAce = false;
+        this.text = emoji + " ";
     }
 
     /**
@@ -87,5 +93,21 @@ public enum Cards {
         this.value = value;
         this.emoji = emoji;
         this.isAce = isAce;
+        this.text = emoji + " ";
+    }
+
+    /**
+     * @param ordinal the card's position in the deck order.
+     * @return the card at that position, without copying the values array.
+     */
+    public static Cards get(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * @return the number of cards in one deck.
+     */
+    public static int count() {
+        return VALUES.length;
     }
 }
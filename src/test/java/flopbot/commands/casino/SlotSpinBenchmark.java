@@ -0,0 +1,68 @@
+package flopbot.commands.casino;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares spins per second of the original stream-based slot machine against {@link SlotTheme}.
+ * Each benchmark rolls one spin, works out its payout, and renders the three rows shown in the embed.
+ *
+ * <p>Run with {@code mvn test-compile} followed by this class's main method,
+ * or {@code java -cp <test classpath> org.openjdk.jmh.Main SlotSpinBenchmark}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlotSpinBenchmark {
+
+    private static final String[] SYMBOLS = {"🍎", "🍇", "🍌"};
+
+    private final List<String> emojis = List.of(SYMBOLS);
+    private final SlotTheme theme = new SlotTheme("fruity", SYMBOLS, new long[]{9, 9, 9});
+
+    /**
+     * The spin from SlotsCommand before themes were precomputed: a stream of three random ints per row.
+     */
+    @Benchmark
+    public void streamSpin(Blackhole blackhole) {
+        int[] slot = new int[3];
+        StringBuilder slotMachine = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            int[] row = ThreadLocalRandom.current().ints(3, 0, 3).toArray();
+            String rowStr = Arrays.stream(row)
+                    .mapToObj(emojis::get)
+                    .collect(Collectors.joining(" | "));
+            if (i == 1) {
+                slot = row;
+                rowStr += " ⬅";
+            }
+            slotMachine.append(rowStr).append("\n");
+        }
+        boolean isWinner = slot[0] == slot[1] && slot[0] == slot[2];
+        blackhole.consume(isWinner ? 9 : 0);
+        blackhole.consume(slotMachine.toString());
+    }
+
+    @Benchmark
+    public void themeSpin(Blackhole blackhole) {
+        int spin = SlotTheme.spin();
+        blackhole.consume(theme.getPayout(spin));
+        blackhole.consume(theme.getTopRow(spin) + theme.getMiddleRow(spin) + theme.getBottomRow(spin));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SlotSpinBenchmark.class.getSimpleName()).build()).run();
+    }
+}